@@ -0,0 +1,174 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.UtilPacked;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks of the set engine: checking sets (testSet, testSets), converting cards to features (cardToFeatures,
+ * cardsToFeatures) and finding the sets on the table and in the cards left (findSets).
+ * The parameters are the deck (featureSize, featureCount), the number of cards on the table (tableSize), the part of
+ * the deck left to search (fill) and the Util implementation (packed for UtilPacked, the one the game uses for decks
+ * it supports, or plain for UtilImpl). The cards are drawn from a shuffle with a fixed seed, so runs are comparable.
+ * Run with the GC profiler to also see the allocation rate (gc.alloc.rate) and the bytes allocated per operation
+ * (gc.alloc.rate.norm), e.g.:
+ * java -jar target/benchmarks.jar -prof gc -p featureSize=3,4 -p featureCount=4 -p implementation=packed,plain
+ * Note that findSets with the plain implementation tests every combination of cards, so it is very slow for the larger
+ * decks and fill levels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SetEngineBenchmark {
+
+    /**
+     * The number of candidate sets to check (a power of 2), half of them legal.
+     */
+    private static final int CANDIDATES = 1 << 10;
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"4"})
+    public int featureCount;
+
+    @Param({"12", "21"})
+    public int tableSize;
+
+    @Param({"0.5", "1.0"})
+    public double fill;
+
+    @Param({"packed"})
+    public String implementation;
+
+    private Util util;
+
+    /**
+     * The cards on the table and the cards left to search.
+     */
+    private int[] table;
+    private List<Integer> tableCards;
+    private List<Integer> deckCards;
+
+    /**
+     * The candidate sets: candidate i is at [i * featureSize, (i + 1) * featureSize) in allCandidates.
+     */
+    private int[][] candidates;
+    private int[] allCandidates;
+
+    /**
+     * The next candidate to use (masked with CANDIDATES - 1).
+     */
+    private int next;
+
+    /**
+     * The next card on the table to use (wraps to 0 at table.length, since the table size is any number).
+     */
+    private int nextCard;
+
+    @Setup
+    public void setup() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Util packed = new UtilPacked(config);
+        util = implementation.equals("plain") ? new UtilImpl(config) : packed;
+
+        // a fixed shuffle of the deck: the table is its first cards and the cards left to search follow
+        SplittableRandom random = new SplittableRandom(42);
+        int[] deck = new int[config.deckSize];
+        for (int i = 0; i < deck.length; ++i) {
+            int j = random.nextInt(i + 1);
+            deck[i] = deck[j];
+            deck[j] = i;
+        }
+        table = new int[Math.min(tableSize, deck.length)];
+        System.arraycopy(deck, 0, table, 0, table.length);
+        tableCards = new ArrayList<>();
+        for (int card : table)
+            tableCards.add(card);
+        deckCards = new ArrayList<>();
+        for (int i = 0; i < Math.round(fill * deck.length); ++i)
+            deckCards.add(deck[i]);
+
+        // alternate legal sets (of the whole deck) and random cards
+        List<Integer> all = new ArrayList<>();
+        for (int card : deck)
+            all.add(card);
+        List<int[]> sets = packed.findSets(all, CANDIDATES / 2);
+        candidates = new int[CANDIDATES][];
+        allCandidates = new int[CANDIDATES * featureSize];
+        for (int i = 0; i < CANDIDATES; ++i) {
+            candidates[i] = i % 2 == 0 ? sets.get(i / 2 % sets.size()).clone() : randomCards(random, deck.length);
+            System.arraycopy(candidates[i], 0, allCandidates, i * featureSize, featureSize);
+        }
+    }
+
+    private int[] randomCards(SplittableRandom random, int deckSize) {
+        return random.ints(0, deckSize).distinct().limit(featureSize).sorted().toArray();
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(candidates[next++ & CANDIDATES - 1]);
+    }
+
+    /**
+     * Checks all the candidates in one call (the way the dealer checks a batch of claims).
+     */
+    @Benchmark
+    public BitSet testSets() {
+        return util.testSets(allCandidates, featureSize);
+    }
+
+    @Benchmark
+    public int[] cardToFeatures() {
+        int card = table[nextCard];
+        if (++nextCard == table.length) nextCard = 0;
+        return util.cardToFeatures(card);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(table);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsOnTable() {
+        return util.findSets(tableCards, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds all the sets in the part of the deck left (the way the sets left in the game are counted).
+     */
+    @Benchmark
+    public List<int[]> findSetsInDeck() {
+        return util.findSets(deckCards, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,186 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static bguspl.set.UserInterfaceSwing.intInBaseToPaddedString;
+
+/**
+ * The card images of the game, scaled once to the cell size and converted to the screen's image format, so drawing a
+ * card is a plain copy.
+ * The images are loaded from a single atlas resource (cards/atlas.png, described by cards/atlas.properties) when it
+ * matches the deck, and otherwise from one PNG resource per card. Either way, the images are sliced or decoded and
+ * scaled in parallel. Decks with no images are drawn by a CardRenderer instead.
+ * The atlas is generated from the PNG resources by running this class (see main).
+ */
+final class CardImages {
+
+    /**
+     * The atlas resources.
+     */
+    static final String ATLAS = "cards/atlas.png";
+    static final String ATLAS_INFO = "cards/atlas.properties";
+
+    /**
+     * The number of cells in each row of a generated atlas.
+     */
+    private static final int ATLAS_COLUMNS = 9;
+
+    /**
+     * The image of each card, by card id.
+     */
+    final BufferedImage[] cards;
+
+    /**
+     * The image of an empty slot.
+     */
+    final BufferedImage emptyCard;
+
+    private CardImages(BufferedImage[] cards, BufferedImage emptyCard) {
+        this.cards = cards;
+        this.emptyCard = emptyCard;
+    }
+
+    /**
+     * Loads the card images of the deck, scaled to the cell size.
+     *
+     * @param config - the game configuration.
+     * @return - the card images, or null if there are no images for the deck.
+     * @throws UncheckedIOException - if an image resource cannot be decoded.
+     */
+    static CardImages load(Config config) {
+        CardImages images = fromAtlas(config);
+        return images != null ? images : fromFiles(config);
+    }
+
+    /**
+     * Slices the card images out of the atlas.
+     *
+     * @return - the card images, or null if there is no atlas for the deck.
+     */
+    static CardImages fromAtlas(Config config) {
+        Properties info = new Properties();
+        try (InputStream is = CardImages.class.getClassLoader().getResourceAsStream(ATLAS_INFO)) {
+            if (is == null) return null;
+            info.load(is);
+        } catch (IOException e) {
+            return null;
+        }
+        if (Integer.parseInt(info.getProperty("FeatureSize")) != config.featureSize
+                || Integer.parseInt(info.getProperty("FeatureCount")) != config.featureCount)
+            return null;
+
+        int width = Integer.parseInt(info.getProperty("CellWidth"));
+        int height = Integer.parseInt(info.getProperty("CellHeight"));
+        int columns = Integer.parseInt(info.getProperty("Columns"));
+        BufferedImage atlas = readResource(ATLAS);
+
+        // the cards are in card id order, followed by the empty card
+        BufferedImage[] cells = new BufferedImage[config.deckSize + 1];
+        IntStream.range(0, cells.length).parallel().forEach(i -> cells[i] = scale(
+                atlas.getSubimage(i % columns * width, i / columns * height, width, height), config));
+        return new CardImages(Arrays.copyOf(cells, config.deckSize), cells[config.deckSize]);
+    }
+
+    /**
+     * Decodes the card images from one PNG resource per card.
+     *
+     * @return - the card images, or null if a card has no PNG resource.
+     */
+    static CardImages fromFiles(Config config) {
+        if (config.featureSize >= 10) return null; // otherwise there will be naming conflicts
+        ClassLoader resources = CardImages.class.getClassLoader();
+        for (int i = 0; i < config.deckSize; ++i)
+            if (resources.getResource(cardResource(i, config)) == null) return null;
+
+        BufferedImage[] cards = new BufferedImage[config.deckSize];
+        IntStream.range(0, cards.length).parallel().forEach(i -> cards[i] = scale(readResource(cardResource(i, config)), config));
+        return new CardImages(cards, scale(readResource("cards/empty_card.png"), config));
+    }
+
+    private static String cardResource(int card, Config config) {
+        return "cards/" + intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png";
+    }
+
+    private static BufferedImage readResource(String name) {
+        URL resource = CardImages.class.getClassLoader().getResource(name);
+        try {
+            if (resource == null) throw new FileNotFoundException(name);
+            return ImageIO.read(resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scales an image to the cell size, in the screen's image format.
+     */
+    private static BufferedImage scale(BufferedImage source, Config config) {
+        BufferedImage image = createImage(config, source.getTransparency());
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, config.cellWidth, config.cellHeight, null);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Creates an empty image of the cell size, in the screen's image format.
+     *
+     * @param transparency - the transparency of the image (see Transparency).
+     */
+    static BufferedImage createImage(Config config, int transparency) {
+        if (GraphicsEnvironment.isHeadless())
+            return new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB);
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(config.cellWidth, config.cellHeight, transparency);
+    }
+
+    /**
+     * Generates the atlas from the PNG resources of the default deck (at their original size).
+     *
+     * @param args - the resources directory to write the atlas to (default: src/main/resources).
+     */
+    public static void main(String[] args) throws IOException {
+        File resources = new File(args.length > 0 ? args[0] : "src/main/resources");
+        Config config = new Config(Logger.getAnonymousLogger(), new Properties());
+
+        BufferedImage[] cells = new BufferedImage[config.deckSize + 1];
+        for (int i = 0; i < config.deckSize; ++i)
+            cells[i] = readResource(cardResource(i, config));
+        cells[config.deckSize] = readResource("cards/empty_card.png");
+
+        int width = cells[0].getWidth();
+        int height = cells[0].getHeight();
+        int rows = (cells.length + ATLAS_COLUMNS - 1) / ATLAS_COLUMNS;
+        BufferedImage atlas = new BufferedImage(ATLAS_COLUMNS * width, rows * height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        for (int i = 0; i < cells.length; ++i)
+            g.drawImage(cells[i], i % ATLAS_COLUMNS * width, i / ATLAS_COLUMNS * height, null);
+        g.dispose();
+        ImageIO.write(atlas, "png", new File(resources, ATLAS));
+
+        try (Writer writer = new FileWriter(new File(resources, ATLAS_INFO))) {
+            writer.write("# The card images in one atlas, generated by bguspl.set.CardImages from the card PNG files.\n");
+            writer.write("# Cell i holds card i, and the cell after the last card holds the empty card.\n");
+            writer.write("FeatureSize=" + config.featureSize + "\n");
+            writer.write("FeatureCount=" + config.featureCount + "\n");
+            writer.write("CellWidth=" + width + "\n");
+            writer.write("CellHeight=" + height + "\n");
+            writer.write("Columns=" + ATLAS_COLUMNS + "\n");
+        }
+    }
+}
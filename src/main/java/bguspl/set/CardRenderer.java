@@ -0,0 +1,160 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Draws the card images of decks with no image files (see CardImages) from the features of each card:
+ * the first feature is the number of shapes, the second their color, the third their shape and the fourth how much
+ * they are filled. Cards of decks with more features, or with too many choices to tell apart by eye, are also labeled
+ * with their features.
+ * The images drawn are kept in a least recently used cache of Config::cardImageCacheSize images, so the memory used
+ * does not grow with the deck. Not thread-safe: used by the event dispatch thread only.
+ */
+final class CardRenderer {
+
+    /**
+     * The maximal number of choices of a feature that can be told apart without a label.
+     */
+    private static final int MAX_DRAWN_FEATURE_SIZE = 6;
+
+    private final Config config;
+    private final Util util;
+
+    /**
+     * The images drawn, by card id, from the least to the most recently used.
+     */
+    private final Map<Integer, BufferedImage> cache;
+
+    /**
+     * The image of an empty slot.
+     */
+    final BufferedImage emptyCard;
+
+    /**
+     * @param config - the game configuration.
+     * @param util   - the game utilities (to find the features of the cards).
+     */
+    CardRenderer(Config config, Util util) {
+        this.config = config;
+        this.util = util;
+        int capacity = Math.max(1, config.cardImageCacheSize);
+        cache = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+        emptyCard = drawEmptyCard();
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the image of the card, drawn unless it is in the cache.
+     */
+    BufferedImage image(int card) {
+        return cache.computeIfAbsent(card, this::draw);
+    }
+
+    /**
+     * @return - the number of images in the cache.
+     */
+    int cached() {
+        return cache.size();
+    }
+
+    private Graphics2D createGraphics(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        return g;
+    }
+
+    private Shape cardShape() {
+        int margin = Math.max(2, config.cellWidth / 40);
+        return new RoundRectangle2D.Float(margin, margin, config.cellWidth - 2 * margin, config.cellHeight - 2 * margin,
+                4 * margin, 4 * margin);
+    }
+
+    private BufferedImage drawEmptyCard() {
+        BufferedImage image = CardImages.createImage(config, Transparency.TRANSLUCENT);
+        Graphics2D g = createGraphics(image);
+        g.setColor(Color.LIGHT_GRAY);
+        g.fill(cardShape());
+        g.dispose();
+        return image;
+    }
+
+    private BufferedImage draw(int card) {
+        int[] features = util.cardToFeatures(card);
+        BufferedImage image = CardImages.createImage(config, Transparency.TRANSLUCENT);
+        Graphics2D g = createGraphics(image);
+
+        Shape face = cardShape();
+        g.setColor(Color.WHITE);
+        g.fill(face);
+        g.setColor(Color.DARK_GRAY);
+        g.draw(face);
+
+        // the shapes side by side, centered on the card
+        int count = feature(features, 0) + 1;
+        Color color = Color.getHSBColor((float) feature(features, 1) / config.featureSize, 0.85f, 0.8f);
+        int fill = config.featureSize > 1 ? 255 * feature(features, 3) / (config.featureSize - 1) : 255;
+        float width = Math.min(config.cellWidth * 0.8f / count, config.cellWidth / 4f);
+        float height = config.cellHeight * 0.6f;
+        float left = (config.cellWidth - count * width) / 2;
+        float top = (config.cellHeight - height) / 2;
+        g.setStroke(new BasicStroke(Math.max(1, config.cellWidth / 100f)));
+        for (int i = 0; i < count; ++i) {
+            Shape shape = shape(feature(features, 2), left + i * width + width * 0.1f, top, width * 0.8f, height);
+            g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), fill));
+            g.fill(shape);
+            g.setColor(color);
+            g.draw(shape);
+        }
+
+        if (features.length > 4 || config.featureSize > MAX_DRAWN_FEATURE_SIZE) {
+            StringBuilder label = new StringBuilder();
+            for (int feature : features) {
+                if (config.featureSize > Character.MAX_RADIX && label.length() > 0) label.append(' ');
+                label.append(Integer.toString(feature, Character.MAX_RADIX));
+            }
+            g.setColor(Color.DARK_GRAY);
+            g.setFont(new Font("Monospaced", Font.PLAIN, Math.max(8, config.cellHeight / 10)));
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(label.toString(), (config.cellWidth - metrics.stringWidth(label.toString())) / 2,
+                    config.cellHeight - config.cellHeight / 20 - metrics.getDescent());
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static int feature(int[] features, int i) {
+        return i < features.length ? features[i] : 0;
+    }
+
+    /**
+     * @param kind - the shape: an ellipse for 0, otherwise a polygon of kind + 3 corners.
+     * @return - the shape, fitted in the given bounds.
+     */
+    private static Shape shape(int kind, float x, float y, float width, float height) {
+        if (kind == 0) return new Ellipse2D.Float(x, y, width, height);
+
+        int corners = kind + 3;
+        Path2D.Float polygon = new Path2D.Float();
+        for (int i = 0; i < corners; ++i) {
+            double angle = -Math.PI / 2 + 2 * Math.PI * i / corners;
+            float px = x + width / 2 * (1 + (float) Math.cos(angle));
+            float py = y + height / 2 * (1 + (float) Math.sin(angle));
+            if (i == 0) polygon.moveTo(px, py);
+            else polygon.lineTo(px, py);
+        }
+        polygon.closePath();
+        return polygon;
+    }
+}
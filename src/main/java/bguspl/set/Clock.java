@@ -0,0 +1,98 @@
+package bguspl.set;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The source of time of the game: a monotonic time in nanoseconds (only differences between times are meaningful)
+ * and waiting for a time. The game reads the time and waits only through its clock (see Env::clock), so it can run
+ * on the system's time (SystemClock) or on a simulated one (VirtualClock).
+ * The threads of the game are registered with the clock before they start, and they block only by waiting on it.
+ */
+public interface Clock {
+
+    /**
+     * The clock of the system.
+     */
+    Clock SYSTEM = new SystemClock();
+
+    /**
+     * A deadline that never comes: parkUntil(FOREVER) waits until the thread is unparked or interrupted.
+     */
+    long FOREVER = Long.MAX_VALUE;
+
+    /**
+     * @return - the current time in nanoseconds.
+     */
+    long nanoTime();
+
+    /**
+     * @return - the current time in milliseconds.
+     */
+    default long millis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanoTime());
+    }
+
+    /**
+     * Parks the current thread until the time is deadline, the thread is unparked (see LockSupport::unpark) or
+     * interrupted. May also return for no reason, so call it in a loop that checks what is waited for.
+     *
+     * @param deadline - the time (see nanoTime) to wait until.
+     */
+    void parkUntil(long deadline);
+
+    /**
+     * Wakes a thread parked in parkUntil (or makes its next call return at once). Threads that wait on the clock
+     * should be woken through it, so a simulated clock knows they run again.
+     *
+     * @param thread - the thread to wake.
+     */
+    default void unpark(Thread thread) {
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Tells the clock about a thread of the game, which blocks only by waiting on the clock (a simulated clock does
+     * not advance while a registered thread runs). Call it before the thread starts.
+     *
+     * @param thread - the thread.
+     */
+    default void register(Thread thread) {}
+
+    /**
+     * Tells the clock that a registered thread no longer waits on it (call it before the thread terminates).
+     *
+     * @param thread - the thread.
+     */
+    default void unregister(Thread thread) {}
+
+    /**
+     * Waits until a condition holds. The threads that make it hold must wake the waiting thread through the clock
+     * (see unpark).
+     *
+     * @param condition - the condition (checked before every wait).
+     * @throws InterruptedException - if the thread is interrupted (the interrupt is cleared).
+     */
+    default void await(BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            parkUntil(FOREVER);
+        }
+    }
+
+    /**
+     * Waits for a number of milliseconds.
+     *
+     * @param millis - the number of milliseconds to wait.
+     * @throws InterruptedException - if the thread is interrupted (the interrupt is cleared).
+     */
+    default void sleep(long millis) throws InterruptedException {
+        long deadline = nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (true) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (nanoTime() - deadline >= 0) return;
+            parkUntil(deadline);
+        }
+    }
+}
@@ -21,6 +21,16 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * The number of user interface events the event log holds until they are written (rounded up to a power of 2)
+     */
+    public final int eventLogCapacity;
+
+    /**
+     * The file to record the game journal to (see GameJournal), or an empty string for no journal
+     */
+    public final String journalFile;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -36,6 +46,11 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The minimal number of cards for which sets are searched for in parallel (0 or less to always search serially)
+     */
+    public final int parallelSearchThreshold;
+
     /**
      * The number of human players in the game.
      */
@@ -56,6 +71,11 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * The seed for shuffling the deck (0 for a different seed in every game)
+     */
+    public final long randomSeed;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -132,6 +152,16 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximal number of times per second the screen is redrawn
+     */
+    public final int maxFramesPerSecond;
+
+    /**
+     * The maximal number of drawn card images kept in memory when the cards have no image files
+     */
+    public final int cardImageCacheSize;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +185,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -192,11 +222,14 @@ public class Config {
         randomSpinMax = Long.parseLong(properties.getProperty("RandomSpinMax", "0"));
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
+        eventLogCapacity = Integer.parseInt(properties.getProperty("EventLogCapacity", "8192"));
+        journalFile = properties.getProperty("JournalFile", "").trim();
 
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        parallelSearchThreshold = Integer.parseInt(properties.getProperty("ParallelSearchThreshold", "256"));
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -204,6 +237,7 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        randomSeed = Long.parseLong(properties.getProperty("RandomSeed", "0"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
@@ -224,6 +258,8 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        maxFramesPerSecond = Integer.parseInt(properties.getProperty("MaxFramesPerSecond", "60"));
+        cardImageCacheSize = Integer.parseInt(properties.getProperty("CardImageCacheSize", "128"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -9,10 +9,26 @@ public class Env {
     public final UserInterface ui;
     public final Util util;
 
+    /**
+     * The journal the game is recorded to (null if it is not recorded).
+     */
+    public final GameJournal journal;
+
+    /**
+     * The clock the game reads the time from and waits on.
+     */
+    public final Clock clock;
+
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, null, Clock.SYSTEM);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameJournal journal, Clock clock) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.journal = journal;
+        this.clock = clock;
     }
 }
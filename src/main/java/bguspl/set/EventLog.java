@@ -0,0 +1,256 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A log of user interface events that never blocks the game threads on formatting or on disk I/O.
+ * An event is a fixed-size record of primitives (kind, two ints, a long and the time) written into a preallocated
+ * ring buffer, so logging an event allocates nothing and takes a compare-and-set and a few stores. A writer thread
+ * formats the records in order and passes them to the logger in batches, with the time each event happened.
+ * When the ring buffer is full, new events are dropped (and counted) rather than waiting for the writer.
+ */
+final class EventLog {
+
+    /**
+     * The kinds of events (the first five are the kinds of TableDelta changes, with the same arguments).
+     */
+    static final int PLACE_CARD = TableDelta.PLACE_CARD;
+    static final int REMOVE_CARD = TableDelta.REMOVE_CARD;
+    static final int PLACE_TOKEN = TableDelta.PLACE_TOKEN;
+    static final int REMOVE_TOKEN = TableDelta.REMOVE_TOKEN;
+    static final int REMOVE_TOKENS = TableDelta.REMOVE_TOKENS;
+    static final int REMOVE_ALL_TOKENS = 5;
+    static final int TABLE_CHANGES = 6;
+    static final int COUNTDOWN = 7;
+    static final int ELAPSED = 8;
+    static final int FREEZE = 9;
+    static final int SCORE = 10;
+    static final int WINNERS = 11;
+    static final int WINNER = 12;
+    static final int DISPOSE = 13;
+
+    /**
+     * The number of nanoseconds the writer waits for new events once it wrote all of them.
+     */
+    private static final long WRITE_INTERVAL_NANOS = 5_000_000;
+
+    private final Logger logger;
+
+    /**
+     * The number of records in the ring buffer (a power of 2) and the mask of a record's index in it.
+     */
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * The records: record i is (times[i], kinds[i], firsts[i], seconds[i], values[i]).
+     */
+    private final long[] times;
+    private final int[] kinds;
+    private final int[] firsts;
+    private final int[] seconds;
+    private final long[] values;
+
+    /**
+     * The sequence number of the record last written into each index (-1 if none), set once the record is complete.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * The sequence number of the next record to claim.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * The sequence number of the next record to write to the logger (only changed by the writer thread).
+     */
+    private volatile long written;
+
+    /**
+     * The number of events dropped because the ring buffer was full, and how many of them were reported.
+     */
+    private final LongAdder dropped = new LongAdder();
+    private long reported;
+
+    private final ThreadLogger writer;
+    private volatile boolean closed;
+
+    /**
+     * @param logger - the logger to write the events to.
+     * @param config - the game configuration.
+     */
+    EventLog(Logger logger, Config config) {
+        this.logger = logger;
+        capacity = Integer.highestOneBit(Math.max(2, config.eventLogCapacity) * 2 - 1);
+        mask = capacity - 1;
+        times = new long[capacity];
+        kinds = new int[capacity];
+        firsts = new int[capacity];
+        seconds = new int[capacity];
+        values = new long[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; ++i)
+            published.set(i, -1);
+
+        writer = new ThreadLogger(this::writeUntilClosed, "event log", logger);
+        writer.setDaemon(true); // does not keep the program alive if the window is closed mid-game
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    void start() {
+        writer.startWithLog();
+    }
+
+    /**
+     * Writes the events logged so far and stops the writer thread.
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.joinWithLog();
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * @return - the number of events dropped because the ring buffer was full.
+     */
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Claims consecutive records.
+     *
+     * @return - the sequence number of the first record, or -1 if there is no room for them (they are dropped).
+     */
+    private long claim(int count) {
+        long sequence;
+        do {
+            sequence = next.get();
+            if (sequence + count - written > capacity) {
+                dropped.add(count);
+                return -1;
+            }
+        } while (!next.compareAndSet(sequence, sequence + count));
+        return sequence;
+    }
+
+    private void put(long sequence, long time, int kind, int first, int second, long value) {
+        int i = (int) sequence & mask;
+        times[i] = time;
+        kinds[i] = kind;
+        firsts[i] = first;
+        seconds[i] = second;
+        values[i] = value;
+        published.lazySet(i, sequence);
+    }
+
+    /**
+     * Logs an event.
+     *
+     * @param kind   - the kind of the event.
+     * @param first  - the card or the player of the event (if any).
+     * @param second - the slot of the event (if any).
+     * @param value  - the time or the score of the event (if any).
+     */
+    void log(int kind, int first, int second, long value) {
+        long sequence = claim(1);
+        if (sequence >= 0) put(sequence, System.currentTimeMillis(), kind, first, second, value);
+    }
+
+    /**
+     * Logs the changes of a TableDelta as consecutive events, after an event with their number.
+     */
+    void log(TableDelta delta) {
+        long sequence = claim(delta.size() + 1);
+        if (sequence < 0) return;
+
+        long time = System.currentTimeMillis();
+        put(sequence, time, TABLE_CHANGES, delta.size(), 0, 0);
+        for (int i = 0; i < delta.size(); ++i)
+            put(sequence + 1 + i, time, delta.kind(i), delta.value(i), delta.slot(i), 0);
+    }
+
+    /**
+     * Logs the winners as consecutive events, after an event with their number.
+     */
+    void logWinners(int[] players) {
+        long sequence = claim(players.length + 1);
+        if (sequence < 0) return;
+
+        long time = System.currentTimeMillis();
+        put(sequence, time, WINNERS, players.length, 0, 0);
+        for (int i = 0; i < players.length; ++i)
+            put(sequence + 1 + i, time, WINNER, players[i], 0, 0);
+    }
+
+    /**
+     * The main loop of the writer thread.
+     */
+    private void writeUntilClosed() {
+        while (!closed)
+            if (!writeBatch()) LockSupport.parkNanos(this, WRITE_INTERVAL_NANOS);
+        while (writeBatch()) ;
+    }
+
+    /**
+     * Writes the records published so far (up to a full ring buffer) to the logger, in order, reports the events
+     * dropped since the last batch and flushes the logger's handlers.
+     *
+     * @return - true iff a full ring buffer was written (there may be more records to write).
+     */
+    private boolean writeBatch() {
+        long sequence = written;
+        long first = sequence;
+        for (int i = (int) sequence & mask; published.get(i) == sequence && sequence - first < capacity;
+             i = (int) sequence & mask) {
+            LogRecord record = new LogRecord(Level.SEVERE, format(i));
+            record.setMillis(times[i]);
+            record.setLoggerName(logger.getName());
+            logger.log(record);
+            written = ++sequence;
+        }
+
+        long drops = dropped.sum();
+        if (drops > reported) {
+            logger.warning("event log full: dropped " + (drops - reported) + " events");
+            reported = drops;
+        }
+        if (sequence > first)
+            for (Handler handler : logger.getHandlers()) handler.flush();
+        return sequence - first == capacity;
+    }
+
+    private String format(int i) {
+        int first = firsts[i];
+        int second = seconds[i];
+        long value = values[i];
+        switch (kinds[i]) {
+            case PLACE_CARD: return "placing card " + first + " in slot " + second;
+            case REMOVE_CARD: return "removing card from slot " + second;
+            case PLACE_TOKEN: return "player " + (first + 1) + " placing token on slot " + second;
+            case REMOVE_TOKEN: return "removing player " + (first + 1) + " token from slot " + second;
+            case REMOVE_TOKENS: return "removing tokens from slot " + second;
+            case REMOVE_ALL_TOKENS: return "removing all tokens";
+            case TABLE_CHANGES: return "applying " + first + " table changes";
+            case COUNTDOWN: return "updating countdown to " + value;
+            case ELAPSED: return "updating elapsed time to " + value;
+            case FREEZE: return "setting player " + (first + 1) + " freeze to " + value;
+            case SCORE: return "setting player " + (first + 1) + " score to " + value;
+            case WINNERS: return "announcing " + first + " winner(s)";
+            case WINNER: return "announcing winner: player " + (first + 1);
+            case DISPOSE: return "disposing of user interface elements";
+            default: return "unknown event " + kinds[i];
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An append-only binary journal of the state transitions of a game, backed by memory-mapped chunks of a file.
+ * The journal is a user interface that records every operation before passing it to another user interface (if any);
+ * the dealer also records the claims, points, penalties and reshuffles that the user interface does not see.
+ * Every transition is one fixed-size record (see RECORD_BYTES), and appending a record takes an atomic increment and a
+ * few stores into the mapped file: nothing is formatted, buffered or written by the game threads, so the journal is
+ * lossless at a small cost. Records are in the order their positions were claimed, and the first one describes the game
+ * (see HEADER). A journal is replayed by JournalReplay.
+ * Record layout (big-endian): the time (nanoseconds since the journal was opened, long), the kind (int), three int
+ * arguments (first, second, third) and a long value. A kind of 0 marks the end of the journal.
+ */
+public class GameJournal implements UserInterface {
+
+    /**
+     * The size of a record in bytes.
+     */
+    public static final int RECORD_BYTES = 32;
+
+    /**
+     * The kinds of records and their arguments (first, second, third, value).
+     */
+    public static final int END = 0;
+    public static final int HEADER = 1;             // players, rows, columns, featureSize << 32 | featureCount
+    public static final int PLACE_CARD = 2;         // card, slot
+    public static final int REMOVE_CARD = 3;        // -, slot
+    public static final int PLACE_TOKEN = 4;        // player, slot
+    public static final int REMOVE_TOKEN = 5;       // player, slot
+    public static final int REMOVE_TOKENS = 6;      // -, slot
+    public static final int REMOVE_ALL_TOKENS = 7;
+    public static final int COUNTDOWN = 8;          // 1 iff warn, -, -, millis
+    public static final int ELAPSED = 9;            // -, -, -, millis
+    public static final int FREEZE = 10;            // player, -, -, millis
+    public static final int SCORE = 11;             // player, -, -, score
+    public static final int WINNER = 12;            // player (one record per winner, announced together)
+    public static final int CLAIM = 13;             // player, number of cards (followed by a CLAIM_CARD record each)
+    public static final int CLAIM_CARD = 14;        // card, slot
+    public static final int POINT = 15;             // player
+    public static final int PENALTY = 16;           // player
+    public static final int RESHUFFLE = 17;
+
+    /**
+     * The number of records in each mapped chunk of the file (1 MiB).
+     */
+    private static final int CHUNK_RECORDS = 1 << 15;
+
+    private static final int TIME = 0;
+    private static final int KIND = 8;
+    private static final int FIRST = 12;
+    private static final int SECOND = 16;
+    private static final int THIRD = 20;
+    private static final int VALUE = 24;
+
+    private final UserInterface ui;
+    private final FileChannel channel;
+
+    /**
+     * The mapped chunks of the file (replaced by a longer copy when a chunk is added).
+     */
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    /**
+     * The index of the next record to append.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * The time the journal was opened (System::nanoTime).
+     */
+    private final long start = System.nanoTime();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a journal file (replacing an existing one) and records the header.
+     *
+     * @param config  - the game configuration.
+     * @param journal - the file to record to.
+     * @param ui      - the user interface to pass the operations to (or null).
+     * @throws UncheckedIOException - if the file cannot be created.
+     */
+    public GameJournal(Config config, Path journal, UserInterface ui) {
+        this.ui = ui;
+        try {
+            channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(HEADER, config.players, config.rows, config.columns,
+                (long) config.featureSize << 32 | config.featureCount);
+    }
+
+    /**
+     * @return - the number of records appended (including the header).
+     */
+    public long size() {
+        return next.get();
+    }
+
+    private MappedByteBuffer chunk(int index) {
+        MappedByteBuffer[] mapped = chunks;
+        return index < mapped.length ? mapped[index] : map(index);
+    }
+
+    private synchronized MappedByteBuffer map(int index) {
+        MappedByteBuffer[] mapped = chunks;
+        if (index < mapped.length) return mapped[index];
+
+        mapped = Arrays.copyOf(mapped, index + 1);
+        try {
+            for (int i = chunks.length; i <= index; ++i)
+                mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * CHUNK_RECORDS * RECORD_BYTES,
+                        (long) CHUNK_RECORDS * RECORD_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunks = mapped;
+        return mapped[index];
+    }
+
+    /**
+     * Claims the positions of consecutive records.
+     *
+     * @return - the position of the first record, or -1 if the journal is closed.
+     */
+    private long reserve(int count) {
+        return closed ? -1 : next.getAndAdd(count);
+    }
+
+    private void append(int kind, int first, int second, int third, long value) {
+        long record = reserve(1);
+        if (record >= 0) put(record, kind, first, second, third, value);
+    }
+
+    private void put(long record, int kind, int first, int second, int third, long value) {
+        MappedByteBuffer chunk = chunk((int) (record / CHUNK_RECORDS));
+        int offset = (int) (record % CHUNK_RECORDS) * RECORD_BYTES;
+        chunk.putLong(offset + TIME, System.nanoTime() - start);
+        chunk.putInt(offset + FIRST, first);
+        chunk.putInt(offset + SECOND, second);
+        chunk.putInt(offset + THIRD, third);
+        chunk.putLong(offset + VALUE, value);
+        chunk.putInt(offset + KIND, kind); // last, so a record cut short reads as the end of the journal
+    }
+
+    /**
+     * Records a claim and its cards (before the dealer decides on it: a POINT or a PENALTY record follows, unless the
+     * claim was stale).
+     *
+     * @param player - the player who claimed the set.
+     * @param cards  - the cards claimed.
+     * @param slots  - the slots of the cards claimed.
+     */
+    public void claim(int player, int[] cards, int[] slots) {
+        long record = reserve(slots.length + 1);
+        if (record < 0) return;
+        put(record, CLAIM, player, slots.length, 0, 0);
+        for (int i = 0; i < slots.length; ++i)
+            put(record + 1 + i, CLAIM_CARD, cards[i], slots[i], 0, 0);
+    }
+
+    public void point(int player) {
+        append(POINT, player, 0, 0, 0);
+    }
+
+    public void penalty(int player) {
+        append(PENALTY, player, 0, 0, 0);
+    }
+
+    public void reshuffle() {
+        append(RESHUFFLE, 0, 0, 0, 0);
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        append(PLACE_CARD, card, slot, 0, 0);
+        if (ui != null) ui.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        append(REMOVE_CARD, 0, slot, 0, 0);
+        if (ui != null) ui.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        append(PLACE_TOKEN, player, slot, 0, 0);
+        if (ui != null) ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        append(REMOVE_ALL_TOKENS, 0, 0, 0, 0);
+        if (ui != null) ui.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        append(REMOVE_TOKENS, 0, slot, 0, 0);
+        if (ui != null) ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        append(REMOVE_TOKEN, player, slot, 0, 0);
+        if (ui != null) ui.removeToken(player, slot);
+    }
+
+    /**
+     * Records the changes as consecutive records and passes the delta on as a whole.
+     */
+    @Override
+    public void apply(TableDelta delta) {
+        long record = reserve(delta.size());
+        for (int i = 0; i < delta.size() && record >= 0; ++i) {
+            switch (delta.kind(i)) {
+                case TableDelta.PLACE_CARD: put(record + i, PLACE_CARD, delta.value(i), delta.slot(i), 0, 0); break;
+                case TableDelta.REMOVE_CARD: put(record + i, REMOVE_CARD, 0, delta.slot(i), 0, 0); break;
+                case TableDelta.PLACE_TOKEN: put(record + i, PLACE_TOKEN, delta.value(i), delta.slot(i), 0, 0); break;
+                case TableDelta.REMOVE_TOKEN: put(record + i, REMOVE_TOKEN, delta.value(i), delta.slot(i), 0, 0); break;
+                case TableDelta.REMOVE_TOKENS: put(record + i, REMOVE_TOKENS, 0, delta.slot(i), 0, 0); break;
+            }
+        }
+        if (ui != null) ui.apply(delta);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        append(COUNTDOWN, warn ? 1 : 0, 0, 0, millies);
+        if (ui != null) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        append(ELAPSED, 0, 0, 0, millies);
+        if (ui != null) ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        append(FREEZE, player, 0, 0, millies);
+        if (ui != null) ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        append(SCORE, player, 0, 0, score);
+        if (ui != null) ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        long record = reserve(players.length);
+        for (int i = 0; i < players.length && record >= 0; ++i)
+            put(record + i, WINNER, players[i], 0, 0, 0);
+        if (ui != null) ui.announceWinner(players);
+    }
+
+    /**
+     * Disposes of the user interface, then flushes the journal to the file and closes it (records appended from then
+     * on are ignored).
+     */
+    @Override
+    public void dispose() {
+        if (ui != null) ui.dispose();
+        closed = true;
+        try {
+            for (MappedByteBuffer chunk : chunks)
+                chunk.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays a game journal (see GameJournal) through a user interface, at the speed it was recorded or at any multiple
+ * of it (or as fast as possible), and counts the claims, points, penalties and reshuffles on the way.
+ * Run from the command line: JournalReplay journal-file [speed] [--headless]. The default speed is 1 (0 for as fast
+ * as possible). The game is shown in a window, or only logged to the console with --headless (or with no display).
+ */
+public class JournalReplay {
+
+    private final UserInterface ui;
+
+    /**
+     * The speed to replay at, relative to the recorded speed (0 or less for as fast as possible).
+     */
+    private final double speed;
+
+    /**
+     * The numbers of records, claims, points, penalties and reshuffles replayed.
+     */
+    private long records;
+    private long claims;
+    private long points;
+    private long penalties;
+    private long reshuffles;
+
+    /**
+     * The winners read so far (announced once the records of all the winners were read).
+     */
+    private int[] winners = new int[0];
+
+    /**
+     * @param ui    - the user interface to replay the journal through.
+     * @param speed - the speed to replay at, relative to the recorded speed (0 or less for as fast as possible).
+     */
+    public JournalReplay(UserInterface ui, double speed) {
+        this.ui = ui;
+        this.speed = speed;
+    }
+
+    private static DataInputStream open(Path journal) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(journal), 1 << 16));
+    }
+
+    /**
+     * Reads the configuration of the game recorded in a journal (the players, the table and the deck).
+     *
+     * @param logger  - the logger for the configuration.
+     * @param journal - the journal file.
+     * @return - the configuration (with the defaults for everything else, all players computer players).
+     * @throws IOException - if the journal cannot be read or does not start with a header.
+     */
+    public static Config readConfig(Logger logger, Path journal) throws IOException {
+        try (DataInputStream in = open(journal)) {
+            in.readLong();
+            if (in.readInt() != GameJournal.HEADER) throw new IOException("not a game journal: " + journal);
+            int players = in.readInt();
+            int rows = in.readInt();
+            int columns = in.readInt();
+            long features = in.readLong();
+
+            Properties properties = new Properties();
+            properties.put("HumanPlayers", "0");
+            properties.put("ComputerPlayers", Integer.toString(players));
+            properties.put("Rows", Integer.toString(rows));
+            properties.put("Columns", Integer.toString(columns));
+            properties.put("FeatureSize", Long.toString(features >>> 32));
+            properties.put("FeatureCount", Long.toString(features & 0xFFFFFFFFL));
+            properties.put("TableDelaySeconds", "0");
+            return new Config(logger, properties);
+        }
+    }
+
+    /**
+     * Replays a journal until its end (or until the thread is interrupted).
+     *
+     * @param journal - the journal file.
+     * @throws IOException - if the journal cannot be read.
+     */
+    public void replay(Path journal) throws IOException {
+        long start = System.nanoTime();
+        try (DataInputStream in = open(journal)) {
+            while (true) {
+                long time;
+                try {
+                    time = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                int kind = in.readInt();
+                int first = in.readInt();
+                int second = in.readInt();
+                in.readInt();
+                long value = in.readLong();
+                if (kind == GameJournal.END) break;
+
+                if (kind != GameJournal.WINNER) announceWinners();
+                if (speed > 0 && !waitUntil(start + (long) (time / speed))) break;
+                replay(kind, first, second, value);
+                ++records;
+            }
+        }
+        announceWinners();
+    }
+
+    /**
+     * @return - false iff the thread was interrupted while waiting.
+     */
+    private static boolean waitUntil(long nanoTime) {
+        try {
+            long delay = nanoTime - System.nanoTime();
+            if (delay > 0) TimeUnit.NANOSECONDS.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void replay(int kind, int first, int second, long value) {
+        switch (kind) {
+            case GameJournal.PLACE_CARD: ui.placeCard(first, second); break;
+            case GameJournal.REMOVE_CARD: ui.removeCard(second); break;
+            case GameJournal.PLACE_TOKEN: ui.placeToken(first, second); break;
+            case GameJournal.REMOVE_TOKEN: ui.removeToken(first, second); break;
+            case GameJournal.REMOVE_TOKENS: ui.removeTokens(second); break;
+            case GameJournal.REMOVE_ALL_TOKENS: ui.removeTokens(); break;
+            case GameJournal.COUNTDOWN: ui.setCountdown(value, first != 0); break;
+            case GameJournal.ELAPSED: ui.setElapsed(value); break;
+            case GameJournal.FREEZE: ui.setFreeze(first, value); break;
+            case GameJournal.SCORE: ui.setScore(first, (int) value); break;
+            case GameJournal.WINNER:
+                winners = Arrays.copyOf(winners, winners.length + 1);
+                winners[winners.length - 1] = first;
+                break;
+            case GameJournal.CLAIM: ++claims; break;
+            case GameJournal.POINT: ++points; break;
+            case GameJournal.PENALTY: ++penalties; break;
+            case GameJournal.RESHUFFLE: ++reshuffles; break;
+        }
+    }
+
+    private void announceWinners() {
+        if (winners.length == 0) return;
+        ui.announceWinner(winners);
+        winners = new int[0];
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public long claims() {
+        return claims;
+    }
+
+    public long points() {
+        return points;
+    }
+
+    public long penalties() {
+        return penalties;
+    }
+
+    public long reshuffles() {
+        return reshuffles;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: JournalReplay journal-file [speed] [--headless]");
+            return;
+        }
+        Path journal = Paths.get(args[0]);
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        boolean headless = args.length > 2 && args[2].equals("--headless");
+
+        Logger logger = Logger.getLogger("SetReplayLogger");
+        logger.setUseParentHandlers(false);
+        ConsoleHandler handler = new ConsoleHandler();
+        handler.setLevel(Level.ALL);
+        logger.addHandler(handler);
+        Config config = readConfig(logger, journal);
+        Util util = config.featureSize <= UtilPacked.MAX_FEATURE_SIZE ? new UtilPacked(config) : new UtilImpl(config);
+
+        UserInterface ui = null;
+        if (!headless) try {
+            ui = new UserInterfaceSwing(logger, config, util, new Player[config.players]);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            logger.severe("error creating swing user interface: " + e.getMessage());
+        }
+        ui = new UserInterfaceDecorator(logger, config, util, ui);
+
+        long start = System.nanoTime();
+        JournalReplay replay = new JournalReplay(ui, speed);
+        replay.replay(journal);
+        ui.dispose();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("replayed %d records in %.3f seconds: %d claims, %d points, %d penalties, %d reshuffles%n",
+                replay.records(), seconds, replay.claims(), replay.points(), replay.penalties(), replay.reshuffles());
+    }
+}
@@ -6,6 +6,7 @@ import bguspl.set.ex.Table;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -27,7 +28,7 @@ public class Main {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
         if (dealer != null) dealer.terminate();
-        mainThread.join();
+        if (mainThread != null) mainThread.join();
     }
 
     /**
@@ -43,21 +44,27 @@ public class Main {
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
+        Util util = config.featureSize <= UtilPacked.MAX_FEATURE_SIZE ? new UtilPacked(config) : new UtilImpl(config);
 
         Player[] players = new Player[config.players];
         UserInterface ui = null;
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            ui = new UserInterfaceSwing(logger, config, util, players);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        Clock clock = Clock.SYSTEM;
+        ui = new UserInterfaceAsync(logger, config, clock, new UserInterfaceDecorator(logger, config, util, ui));
+        GameJournal journal = null;
+        if (!config.journalFile.isEmpty()) {
+            logger.info("recording the game journal to " + config.journalFile);
+            ui = journal = new GameJournal(config, Paths.get(config.journalFile), ui);
+        }
 
-        Env env = new Env(logger, config, ui, util);
+        Env env = new Env(logger, config, ui, util, journal, clock);
 
         // create the game entities
         Table table = new Table(env);
@@ -78,7 +85,9 @@ public class Main {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
-            if (!xButtonPressed) env.ui.dispose();
+            // also when the window is closed: the event dispatch thread waits for this thread (see xButtonPressed),
+            // and disposing of the user interface never waits for it, so the journal and the event log are flushed
+            env.ui.dispose();
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
@@ -109,7 +118,7 @@ public class Main {
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
                         lr.getLevel().getLocalizedName(), lr.getMessage()
                 );
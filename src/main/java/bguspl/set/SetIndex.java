@@ -0,0 +1,153 @@
+package bguspl.set;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable index of all the legal sets of a deck, for decks in which each feature has 3 choices.
+ * In such decks every pair of cards is completed to a legal set by exactly one card, so the index keeps:
+ * 1. the completing card of every pair of cards.
+ * 2. the legal sets of the deck (numbered in lexicographic order) and the sets each card belongs to.
+ * Indexes are built once per deck configuration and shared by all users (see SetIndex::of).
+ *
+ * @inv third(a, b) == third(b, a)
+ * @inv card(set, 0) < card(set, 1) < card(set, 2) for every set
+ */
+public final class SetIndex {
+
+    /**
+     * The largest deck an index is built for (3^7 cards, about 20MB of tables).
+     */
+    public static final int MAX_DECK_SIZE = 2187;
+
+    /**
+     * The indexes built so far, by feature count.
+     */
+    private static final Map<Integer, SetIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * The total number of cards in the deck.
+     */
+    private final int deckSize;
+
+    /**
+     * The completing card of every pair of different cards: the pair (a, b) with a < b is at b * (b - 1) / 2 + a.
+     */
+    private final char[] thirds;
+
+    /**
+     * The cards of every legal set (sorted): the cards of set s are at [3 * s, 3 * s + 3).
+     */
+    private final char[] setCards;
+
+    /**
+     * The sets each card belongs to: the (deckSize - 1) / 2 sets of card c start at c * (deckSize - 1) / 2.
+     */
+    private final int[] cardSets;
+
+    /**
+     * Returns the index of the deck described by the configuration.
+     *
+     * @param config - the game configuration.
+     * @return - the shared index, or null if the deck cannot be indexed (featureSize != 3 or deck too large).
+     */
+    public static SetIndex of(Config config) {
+        if (config.featureSize != 3 || config.deckSize > MAX_DECK_SIZE) return null;
+        return indexes.computeIfAbsent(config.featureCount, SetIndex::new);
+    }
+
+    private SetIndex(int featureCount) {
+        int deckSize = 1;
+        for (int i = 0; i < featureCount; ++i)
+            deckSize *= 3;
+        this.deckSize = deckSize;
+
+        int setsPerCard = (deckSize - 1) / 2;
+        thirds = new char[deckSize * (deckSize - 1) / 2];
+        setCards = new char[deckSize * setsPerCard];
+        cardSets = new int[deckSize * setsPerCard];
+
+        int[] setsFound = new int[deckSize];
+        int set = 0;
+        for (int b = 1; b < deckSize; ++b)
+            for (int a = 0; a < b; ++a) {
+                int c = computeThird(a, b);
+                thirds[b * (b - 1) / 2 + a] = (char) c;
+                if (c > b) { // the set {a, b, c} is found once, by its two smallest cards
+                    setCards[3 * set] = (char) a;
+                    setCards[3 * set + 1] = (char) b;
+                    setCards[3 * set + 2] = (char) c;
+                    cardSets[a * setsPerCard + setsFound[a]++] = set;
+                    cardSets[b * setsPerCard + setsFound[b]++] = set;
+                    cardSets[c * setsPerCard + setsFound[c]++] = set;
+                    ++set;
+                }
+            }
+    }
+
+    /**
+     * Computes the completing card of two cards digit by digit: the third value of each feature is the one making
+     * the sum of the values divisible by 3.
+     */
+    private static int computeThird(int a, int b) {
+        int third = 0;
+        for (int weight = 1; a > 0 || b > 0; weight *= 3, a /= 3, b /= 3)
+            third += (6 - a % 3 - b % 3) % 3 * weight;
+        return third;
+    }
+
+    /**
+     * @return - the total number of cards in the indexed deck.
+     */
+    public int deckSize() {
+        return deckSize;
+    }
+
+    /**
+     * Returns the card that completes two cards to a legal set.
+     *
+     * @param a - a card id.
+     * @param b - a card id.
+     * @return - the completing card id (a itself if a == b).
+     */
+    public int third(int a, int b) {
+        if (a == b) return a;
+        return a < b ? thirds[b * (b - 1) / 2 + a] : thirds[a * (a - 1) / 2 + b];
+    }
+
+    /**
+     * @return - the number of legal sets in the whole deck.
+     */
+    public int setCount() {
+        return setCards.length / 3;
+    }
+
+    /**
+     * @return - the number of legal sets each card belongs to.
+     */
+    public int setsPerCard() {
+        return (deckSize - 1) / 2;
+    }
+
+    /**
+     * Returns one of the sets a card belongs to.
+     *
+     * @param card - the card id.
+     * @param i    - the position of the set in the card's list, between 0 and setsPerCard() - 1.
+     * @return - the set id.
+     */
+    public int setOf(int card, int i) {
+        return cardSets[card * setsPerCard() + i];
+    }
+
+    /**
+     * Returns one of the cards of a set.
+     *
+     * @param set - the set id.
+     * @param i   - the position of the card in the set, between 0 and 2 (cards are sorted).
+     * @return - the card id.
+     */
+    public int card(int set, int i) {
+        return setCards[3 * set + i];
+    }
+}
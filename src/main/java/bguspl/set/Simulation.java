@@ -0,0 +1,86 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Runs full games one after the other as fast as possible, and reports the games and the claims per second.
+ * The games are played by computer players only, with no user interface, no logging and none of the delays meant for
+ * people watching (table delay and end of game pause). There is no turn timeout either: the dealer reshuffles as soon
+ * as the table has no legal set, instead of waiting for the turn to time out. The other settings are read from the
+ * configuration file as usual.
+ * The games run on a VirtualClock: the computer players act as fast as their threads run, and the time only moves
+ * once every thread of the game waits for it, so the freezes take no real time.
+ * Run from the command line: Simulation [games] [configuration file]. The defaults are 10 games and config.properties.
+ */
+public class Simulation {
+
+    /**
+     * The settings the simulation always uses, whatever the configuration file says.
+     */
+    private static final String[][] OVERRIDES = {
+            {"LogLevel", "OFF"},
+            {"HumanPlayers", "0"},
+            {"Hints", "False"},
+            {"TurnTimeoutSeconds", "-1"},
+            {"TurnTimeoutWarningSeconds", "0"},
+            {"TableDelaySeconds", "0"},
+            {"EndGamePauseSeconds", "0"},
+            {"JournalFile", ""}};
+
+    /**
+     * The totals of the games played.
+     */
+    private long games;
+    private long claims;
+    private long points;
+
+    /**
+     * Plays a full game on the current thread.
+     *
+     * @param env - the game environment (with a user interface that shows nothing).
+     */
+    void play(Env env) {
+        Player[] players = new Player[env.config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        dealer.run(); // returns once the game is over and the player threads terminated
+        ++games;
+        claims += dealer.claimsChecked();
+        points += Arrays.stream(players).mapToInt(Player::score).sum();
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String configFile = args.length > 1 ? args[1] : "config.properties";
+
+        Logger logger = Logger.getLogger("SetSimulationLogger");
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties(configFile, logger);
+        for (String[] override : OVERRIDES)
+            properties.setProperty(override[0], override[1]);
+        Config config = new Config(logger, properties);
+        Util util = config.featureSize <= UtilPacked.MAX_FEATURE_SIZE ? new UtilPacked(config) : new UtilImpl(config);
+        VirtualClock clock = new VirtualClock(true);
+        Env env = new Env(logger, config, new UserInterfaceNone(), util, null, clock);
+
+        Simulation simulation = new Simulation();
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++)
+            simulation.play(env);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games in %.3f seconds: %.2f games/s, %d claims (%.0f claims/s), %.2f points per game, "
+                        + "%.1f simulated seconds%n",
+                simulation.games, seconds, simulation.games / seconds, simulation.claims, simulation.claims / seconds,
+                (double) simulation.points / simulation.games, clock.millis() / 1000.0);
+    }
+}
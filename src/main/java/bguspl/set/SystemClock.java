@@ -0,0 +1,20 @@
+package bguspl.set;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The clock of the system (System::nanoTime): waiting for a time takes that time.
+ */
+public class SystemClock implements Clock {
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void parkUntil(long deadline) {
+        if (deadline == FOREVER) LockSupport.park(this);
+        else LockSupport.parkNanos(this, deadline - System.nanoTime());
+    }
+}
@@ -0,0 +1,145 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * A batch of changes to the cards and tokens on the table, applied to a user interface as one transaction
+ * (see UserInterface::apply). The changes are kept in order in a primitive array.
+ * A delta must not be changed once it was applied.
+ */
+public final class TableDelta {
+
+    /**
+     * The kinds of changes.
+     */
+    public static final int PLACE_CARD = 0;
+    public static final int REMOVE_CARD = 1;
+    public static final int PLACE_TOKEN = 2;
+    public static final int REMOVE_TOKEN = 3;
+    public static final int REMOVE_TOKENS = 4;
+
+    /**
+     * The changes: change i is (kind, card or player, slot) at [3 * i, 3 * i + 3).
+     */
+    private int[] changes = new int[3 * 16];
+
+    /**
+     * The number of changes.
+     */
+    private int size;
+
+    private TableDelta add(int kind, int value, int slot) {
+        if (3 * size == changes.length) changes = Arrays.copyOf(changes, 2 * changes.length);
+        changes[3 * size] = kind;
+        changes[3 * size + 1] = value;
+        changes[3 * size + 2] = slot;
+        ++size;
+        return this;
+    }
+
+    /**
+     * @return - this delta, with a card placed in a slot.
+     */
+    public TableDelta placeCard(int card, int slot) {
+        return add(PLACE_CARD, card, slot);
+    }
+
+    /**
+     * @return - this delta, with the card in a slot removed.
+     */
+    public TableDelta removeCard(int slot) {
+        return add(REMOVE_CARD, -1, slot);
+    }
+
+    /**
+     * @return - this delta, with a player's token placed on a slot.
+     */
+    public TableDelta placeToken(int player, int slot) {
+        return add(PLACE_TOKEN, player, slot);
+    }
+
+    /**
+     * @return - this delta, with a player's token removed from a slot.
+     */
+    public TableDelta removeToken(int player, int slot) {
+        return add(REMOVE_TOKEN, player, slot);
+    }
+
+    /**
+     * @return - this delta, with all the tokens on a slot removed.
+     */
+    public TableDelta removeTokens(int slot) {
+        return add(REMOVE_TOKENS, -1, slot);
+    }
+
+    /**
+     * @return - the number of changes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - true iff there are no changes.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param i - the index of a change, between 0 and size() - 1.
+     * @return - the kind of the change (PLACE_CARD, REMOVE_CARD, PLACE_TOKEN, REMOVE_TOKEN or REMOVE_TOKENS).
+     */
+    public int kind(int i) {
+        return changes[3 * i];
+    }
+
+    /**
+     * @param i - the index of a change, between 0 and size() - 1.
+     * @return - the card placed (PLACE_CARD) or the player of the token (PLACE_TOKEN, REMOVE_TOKEN).
+     */
+    public int value(int i) {
+        return changes[3 * i + 1];
+    }
+
+    /**
+     * @param i - the index of a change, between 0 and size() - 1.
+     * @return - the slot changed.
+     */
+    public int slot(int i) {
+        return changes[3 * i + 2];
+    }
+
+    /**
+     * Applies the changes one by one, in order, through the single change methods of a user interface.
+     *
+     * @param ui - the user interface.
+     */
+    public void applyTo(UserInterface ui) {
+        for (int i = 0; i < size; ++i) {
+            switch (kind(i)) {
+                case PLACE_CARD: ui.placeCard(value(i), slot(i)); break;
+                case REMOVE_CARD: ui.removeCard(slot(i)); break;
+                case PLACE_TOKEN: ui.placeToken(value(i), slot(i)); break;
+                case REMOVE_TOKEN: ui.removeToken(value(i), slot(i)); break;
+                case REMOVE_TOKENS: ui.removeTokens(slot(i)); break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) text.append(", ");
+            switch (kind(i)) {
+                case PLACE_CARD: text.append("card ").append(value(i)).append(" to slot ").append(slot(i)); break;
+                case REMOVE_CARD: text.append("card from slot ").append(slot(i)); break;
+                case PLACE_TOKEN: text.append("player ").append(value(i) + 1).append(" token to slot ").append(slot(i)); break;
+                case REMOVE_TOKEN: text.append("player ").append(value(i) + 1).append(" token from slot ").append(slot(i)); break;
+                case REMOVE_TOKENS: text.append("tokens from slot ").append(slot(i)); break;
+            }
+        }
+        return text.toString();
+    }
+}
@@ -43,6 +43,14 @@ public interface UserInterface {
      */
     void removeToken(int player, int slot);
 
+    /**
+     * Apply a batch of changes to the cards and tokens on the table, in order, as one update of the display.
+     * @param delta - the changes.
+     */
+    default void apply(TableDelta delta) {
+        delta.applyTo(this);
+    }
+
     /**
      * Set the countdown time to the specified number of milliseconds.
      * @param millies - the milliseconds to be shown.
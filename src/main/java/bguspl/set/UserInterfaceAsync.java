@@ -0,0 +1,175 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * A user interface that shows the cards and tokens placed and removed (alone or in a TableDelta) on a thread of its
+ * own, in the order they were called.
+ * The delay before each card is shown (Config::tableDelayMillis) is spent on that thread, so the dealer never waits
+ * for the display: the table changes at once and the display of the cards follows at its own pace. The tokens are
+ * shown with no delay of their own, but after the cards called before them, so a token is never shown before its card
+ * or removed by a card change called before it was placed.
+ * The other operations are passed on at once, except for announcing the winners, which waits for the cards shown
+ * before it.
+ */
+public class UserInterfaceAsync implements UserInterface {
+
+    private final UserInterface ui;
+
+    /**
+     * The number of milliseconds to delay before showing a card placed or removed.
+     */
+    private final long cardDelayMillis;
+
+    /**
+     * The clock to wait on.
+     */
+    private final Clock clock;
+
+    /**
+     * The card and token operations not applied yet, in the order they were called.
+     */
+    private final BlockingQueue<Runnable> operations = new LinkedBlockingQueue<>();
+
+    /**
+     * The thread applying the card and token operations.
+     */
+    private final ThreadLogger presenter;
+
+    /**
+     * True iff the user interface was disposed of (only used by the presenter thread).
+     */
+    private boolean disposed;
+
+    /**
+     * @param logger - the game logger.
+     * @param config - the game configuration.
+     * @param ui     - the user interface to pass the operations to.
+     */
+    public UserInterfaceAsync(Logger logger, Config config, UserInterface ui) {
+        this(logger, config, Clock.SYSTEM, ui);
+    }
+
+    /**
+     * @param logger - the game logger.
+     * @param config - the game configuration.
+     * @param clock  - the clock to wait on before showing a card.
+     * @param ui     - the user interface to pass the operations to.
+     */
+    public UserInterfaceAsync(Logger logger, Config config, Clock clock, UserInterface ui) {
+        this.ui = ui;
+        this.cardDelayMillis = config.tableDelayMillis;
+        this.clock = clock;
+
+        presenter = new ThreadLogger(this::present, "presenter", logger);
+        presenter.setDaemon(true); // does not keep the program alive if the window is closed mid-game
+        presenter.startWithLog();
+    }
+
+    /**
+     * The main loop of the presenter thread: applies the operations until the user interface is disposed of.
+     */
+    private void present() {
+        try {
+            while (!disposed)
+                operations.take().run();
+        } catch (InterruptedException ignored) {}
+    }
+
+    private void delayCard() {
+        try {
+            clock.sleep(cardDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        operations.add(() -> {
+            delayCard();
+            ui.placeCard(card, slot);
+        });
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        operations.add(() -> {
+            delayCard();
+            ui.removeCard(slot);
+        });
+    }
+
+    /**
+     * Shows the changes after a single delay (the delta is applied as one update of the display).
+     */
+    @Override
+    public void apply(TableDelta delta) {
+        operations.add(() -> {
+            delayCard();
+            ui.apply(delta);
+        });
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        operations.add(() -> ui.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        operations.add(ui::removeTokens);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        operations.add(() -> ui.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        operations.add(() -> ui.removeToken(player, slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        operations.add(() -> ui.announceWinner(players));
+    }
+
+    /**
+     * Applies the card and token operations called so far, disposes of the user interface and stops the presenter
+     * thread.
+     */
+    @Override
+    public void dispose() {
+        operations.add(() -> {
+            ui.dispose();
+            disposed = true;
+        });
+        try {
+            presenter.joinWithLog();
+        } catch (InterruptedException ignored) {}
+    }
+}
@@ -1,104 +1,112 @@
 package bguspl.set;
 
-import java.util.Arrays;
-import java.util.List;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
+/**
+ * A user interface that logs every operation (see EventLog) before passing it to another user interface (if any).
+ */
 public class UserInterfaceDecorator implements UserInterface {
 
-    private final Logger logger;
+    private final EventLog events;
     private final Util util;
     private final UserInterface ui;
 
-    public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui) {
+    public UserInterfaceDecorator(Logger logger, Config config, Util util, UserInterface ui) {
         this.ui = ui;
-        this.logger = logger;
+        this.events = new EventLog(logger, config);
         this.util = util;
 
         if (ui == null) System.out.println("running without a user interface. Check logs.");
+        events.start();
     }
 
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
+        events.log(EventLog.PLACE_CARD, card, slot, 0);
         util.spin();
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
+        events.log(EventLog.REMOVE_CARD, 0, slot, 0);
         util.spin();
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        events.log(EventLog.PLACE_TOKEN, player, slot, 0);
         util.spin();
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
+        events.log(EventLog.REMOVE_ALL_TOKENS, 0, 0, 0);
         util.spin();
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
+        events.log(EventLog.REMOVE_TOKENS, 0, slot, 0);
         util.spin();
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        events.log(EventLog.REMOVE_TOKEN, player, slot, 0);
         util.spin();
         if (ui != null) ui.removeToken(player, slot);
     }
 
+    @Override
+    public void apply(TableDelta delta) {
+        events.log(delta);
+        util.spin();
+        if (ui != null) ui.apply(delta);
+    }
+
     @Override
     public void setCountdown(long millies, boolean warn) {
         if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
+            events.log(EventLog.COUNTDOWN, 0, 0, millies);
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
+        events.log(EventLog.ELAPSED, 0, 0, millies);
         util.spin();
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        events.log(EventLog.FREEZE, player, 0, millies);
         util.spin();
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
+        events.log(EventLog.SCORE, player, 0, score);
         util.spin();
         if (ui != null) ui.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
+        events.logWinners(players);
         if (ui != null) ui.announceWinner(players);
     }
 
     @Override
     public void dispose() {
-        logger.severe("disposing of user interface elements");
+        events.log(EventLog.DISPOSE, 0, 0, 0);
         if (ui != null) ui.dispose();
+        events.close();
     }
 }
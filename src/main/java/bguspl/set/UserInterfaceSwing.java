@@ -4,10 +4,13 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -15,6 +18,10 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The game threads never touch Swing components: they only record the new state of the display in lock-free
+ * structures and mark what changed as dirty. A Swing timer draws the dirty parts on the event dispatch thread at most
+ * Config::maxFramesPerSecond times per second, repainting only the slots that changed, so many changes between two
+ * frames cost a single redraw.
  */
 public class UserInterfaceSwing extends JFrame implements UserInterface {
 
@@ -23,14 +30,96 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
+    private final Util util;
+
+    /* ------------------------ state shared with the game threads ------------------------ */
+
+    /**
+     * Marks an empty slot.
+     */
+    private static final int NO_CARD = -1;
+
+    /**
+     * The card in each slot (NO_CARD if none).
+     */
+    private final AtomicIntegerArray slotCards;
+
+    /**
+     * The number of words in the token bitmask of each slot (one bit per player).
+     */
+    private final int playerWords;
+
+    /**
+     * The players with a token on each slot: the words of slot s are at [s * playerWords, (s + 1) * playerWords).
+     */
+    private final AtomicLongArray slotTokens;
+
+    /**
+     * The slots changed since the last frame (one bit per slot).
+     */
+    private final AtomicLongArray dirtySlots;
+
+    /**
+     * The freeze time and the score of each player.
+     */
+    private final AtomicLongArray freezes;
+    private final AtomicIntegerArray scores;
+
+    /**
+     * The players whose freeze time or score changed since the last frame (one bit per player).
+     */
+    private final AtomicLongArray dirtyPlayers;
+
+    /**
+     * A time to show on the timer: a countdown (with or without warning) or the elapsed time. Immutable, so the
+     * event dispatch thread always reads the values of the same update together.
+     */
+    private static final class TimerState {
+
+        final long millis;
+        final boolean warn;
+        final boolean elapsed;
+
+        TimerState(long millis, boolean warn, boolean elapsed) {
+            this.millis = millis;
+            this.warn = warn;
+            this.elapsed = elapsed;
+        }
+    }
+
+    /**
+     * The time to show on the timer if it changed since the last frame (null if it did not).
+     */
+    private final AtomicReference<TimerState> timer = new AtomicReference<>();
+
+    /**
+     * The winners to announce (null until they are announced).
+     */
+    private volatile int[] winners;
+
+    /**
+     * Draws a frame with the changes on the event dispatch thread at a fixed rate.
+     */
+    private final Timer frameTimer;
 
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
 
-    public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+    public UserInterfaceSwing(Logger logger, Config config, Util util, Player[] players) {
 
         this.config = config;
+        this.util = util;
+        slotCards = new AtomicIntegerArray(config.tableSize);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            slotCards.set(slot, NO_CARD);
+        playerWords = wordsFor(config.players);
+        slotTokens = new AtomicLongArray(config.tableSize * playerWords);
+        dirtySlots = new AtomicLongArray(wordsFor(config.tableSize));
+        freezes = new AtomicLongArray(config.players);
+        scores = new AtomicIntegerArray(config.players);
+        dirtyPlayers = new AtomicLongArray(wordsFor(config.players));
+
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -66,7 +155,64 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         addKeyListener(new InputManager(logger, config, players));
         addWindowListener(new WindowManager());
 
-        EventQueue.invokeLater(() -> setVisible(true));
+        frameTimer = new Timer(1000 / Math.max(1, config.maxFramesPerSecond), e -> drawFrame());
+        frameTimer.setCoalesce(true);
+        EventQueue.invokeLater(() -> {
+            setVisible(true);
+            frameTimer.start();
+        });
+    }
+
+    private static int wordsFor(int bits) {
+        return (bits + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private static void setBit(AtomicLongArray bits, int i) {
+        bits.getAndAccumulate(i / Long.SIZE, 1L << i, (word, bit) -> word | bit);
+    }
+
+    /**
+     * Calls an action for each bit set in a bitmask, clearing the bitmask.
+     */
+    private static void forEachClearedBit(AtomicLongArray bits, IntConsumer action) {
+        for (int i = 0; i < bits.length(); i++)
+            for (long word = bits.getAndSet(i, 0); word != 0; word &= word - 1)
+                action.accept(i * Long.SIZE + Long.numberOfTrailingZeros(word));
+    }
+
+    private void markSlot(int slot) {
+        setBit(dirtySlots, slot);
+    }
+
+    private void changeTokens(int player, int slot, boolean place) {
+        long bit = 1L << player;
+        int i = slot * playerWords + player / Long.SIZE;
+        if (place) slotTokens.getAndAccumulate(i, bit, (word, b) -> word | b);
+        else slotTokens.getAndAccumulate(i, ~bit, (word, b) -> word & b);
+        markSlot(slot);
+    }
+
+    private void setTimer(long millies, boolean warn, boolean elapsed) {
+        timer.set(new TimerState(millies, warn, elapsed));
+    }
+
+    /**
+     * Draws the changes recorded since the last frame (on the event dispatch thread).
+     */
+    private void drawFrame() {
+        forEachClearedBit(dirtySlots, gamePanel::drawSlot);
+        forEachClearedBit(dirtyPlayers, playersPanel::drawPlayer);
+        TimerState time = timer.getAndSet(null);
+        if (time != null) {
+            if (time.elapsed) timerPanel.setElapsed(time.millis);
+            else timerPanel.setCountdown(time.millis, time.warn);
+        }
+        int[] announced = winners;
+        if (announced != null && !winnerPanel.isVisible()) {
+            playersPanel.setVisible(false);
+            winnerPanel.announceWinner(announced);
+            winnerPanel.setVisible(true);
+        }
     }
 
     private class TimerPanel extends JPanel {
@@ -103,34 +249,27 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private class GamePanel extends JLayeredPane {
 
         private final Image emptyCard;
-        private final Image[] deck;
+        private final IntFunction<Image> deck;
         private final Image[][] grid;
-        private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
-
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            // init deck: load all pictures, pre-scaled to the cell size, or draw them if there are none
+            CardImages images = CardImages.load(config);
+            if (images != null) {
+                deck = card -> images.cards[card];
+                emptyCard = images.emptyCard;
+            } else {
+                CardRenderer renderer = new CardRenderer(config, util);
+                deck = renderer::image;
+                emptyCard = renderer.emptyCard;
+            }
 
             grid = new Image[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
@@ -148,54 +287,22 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void placeCard(int slot, int card) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
-        }
-
-        private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
-        }
-
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
-        }
-
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
-        }
-
-        private void removeToken(int player, int slot) {
+        /**
+         * Draws the card and the tokens of a slot from the shared state and repaints the slot only.
+         */
+        private void drawSlot(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            int card = slotCards.get(slot);
+            grid[row][column] = card == NO_CARD ? emptyCard : deck.apply(card);
+            tokenText[row][column].setText(generatePlayersTokenText(slot));
+            repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
-        private String generatePlayersTokenText(int row, int column) {
+        private String generatePlayersTokenText(int slot) {
             String text = "";
             for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
+                if ((slotTokens.get(slot * playerWords + player / Long.SIZE) & 1L << player) != 0)
                     text = text.concat(config.playerNames[player] + ", ");
             }
             if (text.length() < 2)
@@ -205,10 +312,12 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
+            // draw card images (only the ones in the region being repainted)
+            Rectangle clip = g.getClipBounds();
             for (int row = 0; row < config.rows; row++)
                 for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+                    if (clip == null || clip.intersects(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight))
+                        g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
         }
     }
 
@@ -235,6 +344,11 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
+        private void drawPlayer(int player) {
+            setFreeze(player, freezes.get(player));
+            setScore(player, scores.get(player));
+        }
+
         private void setFreeze(int player, long millies) {
             if (millies > 0) {
                 this.playersTable[0][player].setText(config.playerNames[player] + " (" + millies / 1000 + ")");
@@ -276,63 +390,71 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        slotCards.set(slot, card);
+        markSlot(slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        slotCards.set(slot, NO_CARD);
+        markSlot(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        changeTokens(player, slot, true);
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        for (int i = 0; i < config.tableSize; i++)
+            removeTokens(i);
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        for (int i = slot * playerWords; i < (slot + 1) * playerWords; i++)
+            slotTokens.set(i, 0);
+        markSlot(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        changeTokens(player, slot, false);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        setTimer(millies, warn, false);
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        setTimer(millies, false, true);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        freezes.set(player, millies);
+        setBit(dirtyPlayers, player);
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        scores.set(player, score);
+        setBit(dirtyPlayers, player);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        winners = players;
     }
 
     @Override
     public void dispose() {
-        super.dispose();
+        EventQueue.invokeLater(() -> {
+            frameTimer.stop();
+            super.dispose();
+        });
     }
 }
@@ -1,6 +1,8 @@
 package bguspl.set;
 
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -31,6 +33,23 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks many arrays of cards at once (see testSet).
+     *
+     * @param cards   - the cards of all the candidates, one candidate after the other.
+     * @param setSize - the number of cards in each candidate.
+     * @return - a bit set in which bit i is set iff candidate i (cards[i * setSize .. (i + 1) * setSize)) is a legal set.
+     */
+    default BitSet testSets(int[] cards, int setSize) {
+        BitSet legal = new BitSet(cards.length / setSize);
+        int[] candidate = new int[setSize];
+        for (int i = 0; i < cards.length / setSize; ++i) {
+            System.arraycopy(cards, i * setSize, candidate, 0, setSize);
+            if (testSet(candidate)) legal.set(i);
+        }
+        return legal;
+    }
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +59,17 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds the sets in the given cards one at a time and hands each one to an action, until the action asks to stop.
+     * Unlike findSets, no set is kept, so the memory used does not depend on the number of sets.
+     *
+     * @param cards  - an array of card ids (not modified).
+     * @param action - called with the sorted card ids of each set found; returns false to stop the search.
+     *                 The array is reused between calls, so it should be copied in order to keep it.
+     * @return - the number of sets handed to the action.
+     */
+    int forEachSet(int[] cards, Predicate<int[]> action);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
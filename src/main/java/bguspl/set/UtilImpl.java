@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
 import java.util.stream.IntStream;
 
 /**
@@ -90,6 +91,36 @@ public class UtilImpl implements Util {
         return sets;
     }
 
+    @Override
+    public int forEachSet(int[] cards, Predicate<int[]> action) {
+        int[] sorted = cards.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        int r = config.featureSize;
+        int[] combination = new int[r];
+        int[] set = new int[r];
+        int sets = 0;
+
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+
+        while (combination[r - 1] < n) {
+            for (int i = 0; i < r; ++i)
+                set[i] = sorted[combination[i]];
+            if (testSet(set)) {
+                ++sets;
+                if (!action.test(set)) return sets;
+            }
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return sets;
+    }
+
     public void spin() {
         if (config.randomSpinMax <= 0) return;
         long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
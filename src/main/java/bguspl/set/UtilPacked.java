@@ -0,0 +1,509 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * An allocation-free implementation of the Util interface.
+ * The features of every card in the deck are precomputed once into a flat primitive matrix, so checking a set is
+ * plain arithmetic over that matrix and does not create any objects.
+ */
+public class UtilPacked extends UtilImpl {
+
+    /**
+     * The largest feature size supported (feature values are kept as bits of an int mask).
+     */
+    public static final int MAX_FEATURE_SIZE = Integer.SIZE;
+
+    /**
+     * The number of smallest-card positions a parallel search task handles without splitting further.
+     */
+    private static final int SEARCH_GRAIN = 16;
+
+    /**
+     * The total number of cards in the deck (config.deckSize).
+     */
+    private final int deckSize;
+
+    /**
+     * The number of features on each card (config.featureCount).
+     */
+    private final int featureCount;
+
+    /**
+     * The number of choices for each feature (config.featureSize).
+     */
+    private final int featureSize;
+
+    /**
+     * The features of all cards in the deck: the features of card c are at [c * featureCount, (c + 1) * featureCount).
+     */
+    private final byte[] features;
+
+    /**
+     * The features of all cards in the deck packed into words for SWAR (SIMD within a register) checks.
+     * Each feature is a lane of featureSize bits in which only the bit of the feature's value is set; a lane never
+     * spans two words. The words of card c are at [c * words, (c + 1) * words).
+     */
+    private final long[] lanes;
+
+    /**
+     * The number of words per card in the lanes array.
+     */
+    private final int words;
+
+    /**
+     * In each word: all the bits of all the lanes (fullLanes), the lowest bit of each lane (lowLaneBits) and the
+     * highest bit of each lane (highLaneBits). Only the last word of a card may hold fewer lanes.
+     */
+    private final long[] fullLanes, lowLaneBits, highLaneBits;
+
+    /**
+     * The shared index of the deck's sets (null if the deck is not indexed).
+     */
+    private final SetIndex index;
+
+    /**
+     * The minimal number of cards for which findSets searches in parallel (config.parallelSearchThreshold).
+     */
+    private final int parallelThreshold;
+
+    public UtilPacked(Config config) {
+        super(config);
+        if (config.featureSize > MAX_FEATURE_SIZE)
+            throw new IllegalArgumentException("feature size " + config.featureSize + " is larger than " + MAX_FEATURE_SIZE);
+
+        deckSize = config.deckSize;
+        featureCount = config.featureCount;
+        featureSize = config.featureSize;
+        features = new byte[config.deckSize * featureCount];
+        for (int card = 0; card < config.deckSize; ++card) {
+            int value = card;
+            for (int i = featureCount - 1; i >= 0; --i) {
+                features[card * featureCount + i] = (byte) (value % featureSize);
+                value /= featureSize;
+            }
+        }
+
+        int lanesPerWord = Long.SIZE / featureSize;
+        words = (featureCount + lanesPerWord - 1) / lanesPerWord;
+        lanes = new long[config.deckSize * words];
+        fullLanes = new long[words];
+        lowLaneBits = new long[words];
+        highLaneBits = new long[words];
+        long lane = (1L << featureSize) - 1;
+        for (int i = 0; i < featureCount; ++i) {
+            int word = i / lanesPerWord, shift = i % lanesPerWord * featureSize;
+            fullLanes[word] |= lane << shift;
+            lowLaneBits[word] |= 1L << shift;
+            highLaneBits[word] |= 1L << (shift + featureSize - 1);
+            for (int card = 0; card < config.deckSize; ++card)
+                lanes[card * words + word] |= 1L << (shift + features[card * featureCount + i]);
+        }
+
+        index = SetIndex.of(config);
+        parallelThreshold = config.parallelSearchThreshold;
+    }
+
+    @Override
+    public int[] cardToFeatures(int card) {
+        int[] cardFeatures = new int[featureCount];
+        for (int i = 0; i < featureCount; ++i)
+            cardFeatures[i] = features[card * featureCount + i];
+        return cardFeatures;
+    }
+
+    @Override
+    public boolean testSet(int[] cards) {
+        if (cards.length < 2) return false;
+        if (featureSize == 3 && cards.length == 3) return testTriple(cards[0], cards[1], cards[2]);
+
+        for (int i = 0; i < featureCount; ++i) {
+            // each feature must be either the same in all cards (one value) or different in all cards (n values)
+            int values = 0;
+            for (int card : cards)
+                values |= 1 << features[card * featureCount + i];
+            int distinct = Integer.bitCount(values);
+            if (distinct != 1 && distinct != cards.length) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks the candidates featureSize cards at a time with a few word operations per candidate: the lanes of the
+     * candidate's cards are OR-ed together, and a feature is legal iff its lane has one bit (all same) or all of its
+     * bits (all different). Other candidate sizes are checked one by one.
+     */
+    @Override
+    public BitSet testSets(int[] cards, int setSize) {
+        if (setSize != featureSize || setSize < 2) return super.testSets(cards, setSize);
+
+        BitSet legal = new BitSet(cards.length / setSize);
+        for (int i = 0, first = 0; first + setSize <= cards.length; ++i, first += setSize) {
+            long illegal = 0;
+            for (int word = 0; word < words; ++word) {
+                long seen = 0;
+                for (int j = first; j < first + setSize; ++j)
+                    seen |= lanes[cards[j] * words + word];
+                // no lane is empty, so subtracting 1 from every lane never borrows from the next one
+                long notSingle = nonZeroLanes(seen & (seen - lowLaneBits[word]), word);
+                long notFull = nonZeroLanes(seen ^ fullLanes[word], word);
+                illegal |= notSingle & notFull;
+            }
+            if (illegal == 0) legal.set(i);
+        }
+        return legal;
+    }
+
+    /**
+     * @return - a word with the highest bit of every nonzero lane of x set (and no other bit).
+     */
+    private long nonZeroLanes(long x, int word) {
+        long lowBits = fullLanes[word] & ~highLaneBits[word];
+        // adding the low bits of a lane to their maximum carries into the lane's highest bit iff any is set
+        return ((x & lowBits) + lowBits | x) & highLaneBits[word];
+    }
+
+    @Override
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        if (featureSize < 3) return super.findSets(deck, count);
+
+        int[] cards = new int[deck.size()];
+        for (int i = 0; i < cards.length; ++i)
+            cards[i] = deck.get(i);
+        Search search = new Search(cards);
+        AtomicInteger found = new AtomicInteger();
+
+        List<int[]> sets;
+        if (parallelThreshold > 0 && cards.length >= parallelThreshold)
+            sets = ForkJoinPool.commonPool().invoke(new SearchTask(search, found, count, 0, cards.length));
+        else sets = search.collect(0, cards.length, found, count);
+
+        // parallel parts may overshoot the count before they notice it was reached
+        if (sets.size() > count) sets.subList(count, sets.size()).clear();
+        return sets;
+    }
+
+    @Override
+    public int forEachSet(int[] cards, Predicate<int[]> action) {
+        if (featureSize < 3) return super.forEachSet(cards, action);
+
+        int[] visited = new int[1];
+        new Search(cards.clone()).run(0, cards.length, set -> {
+            ++visited[0];
+            return action.test(set);
+        });
+        return visited[0];
+    }
+
+    /**
+     * A search for the sets in an array of cards, which can be split by the position of the smallest card of the
+     * set. Sets are reported sorted, ordered by the positions of their cards in the sorted array.
+     */
+    private class Search {
+
+        /**
+         * The cards to search in (sorted).
+         */
+        private final int[] cards;
+
+        /**
+         * The cards to search in, as a bitmap indexed by card id.
+         */
+        private final long[] present;
+
+        /**
+         * True iff a part of the search was asked to stop (stops all the parts).
+         */
+        private volatile boolean stopped;
+
+        /**
+         * @param cards - the cards to search in (sorted in place).
+         */
+        private Search(int[] cards) {
+            Arrays.sort(cards);
+            this.cards = cards;
+            present = new long[(deckSize + Long.SIZE - 1) / Long.SIZE];
+            for (int card : cards)
+                present[card / Long.SIZE] |= 1L << card;
+        }
+
+        /**
+         * Finds the sets whose smallest card is at a position in [from, to) into a new list.
+         *
+         * @param found - the number of sets found by all the parts of the search.
+         * @param count - the number of sets after which the search stops.
+         */
+        private List<int[]> collect(int from, int to, AtomicInteger found, int count) {
+            List<int[]> sets = new ArrayList<>();
+            if (found.get() < count) run(from, to, set -> {
+                sets.add(set.clone());
+                return found.incrementAndGet() < count;
+            });
+            return sets;
+        }
+
+        /**
+         * Finds the sets whose smallest card is at a position in [from, to).
+         *
+         * @param action - called with each set found (the array is reused); returns false to stop the search.
+         */
+        private void run(int from, int to, Predicate<int[]> action) {
+            int[] set = new int[featureSize];
+            if (featureSize == 3) {
+                // every pair of cards has exactly one card that completes it to a set; taking only completions
+                // larger than both cards of the pair reports each set once, already sorted.
+                for (int i = from; i < to && !stopped; ++i)
+                    for (int j = i + 1; j < cards.length; ++j) {
+                        int third = thirdCard(cards[i], cards[j]);
+                        if (third > cards[j] && (present[third / Long.SIZE] & 1L << third) != 0) {
+                            set[0] = cards[i];
+                            set[1] = cards[j];
+                            set[2] = third;
+                            if (!report(set, action)) return;
+                        }
+                    }
+            } else {
+                Solver solver = new Solver(set, action);
+                for (int i = from; i < to && !stopped; ++i)
+                    if (!solver.searchFrom(i)) return;
+            }
+        }
+
+        /**
+         * Lists the positions of the cards having each value of each feature (sorted).
+         *
+         * @return - the positions of the cards whose feature f has value v are at [f * featureSize + v].
+         */
+        private int[][] buckets() {
+            int[] sizes = new int[featureCount * featureSize];
+            for (int card : cards)
+                for (int f = 0; f < featureCount; ++f)
+                    ++sizes[f * featureSize + features[card * featureCount + f]];
+
+            int[][] buckets = new int[sizes.length][];
+            for (int i = 0; i < sizes.length; ++i) {
+                buckets[i] = new int[sizes[i]];
+                sizes[i] = 0;
+            }
+            for (int position = 0; position < cards.length; ++position)
+                for (int f = 0; f < featureCount; ++f) {
+                    int bucket = f * featureSize + features[cards[position] * featureCount + f];
+                    buckets[bucket][sizes[bucket]++] = position;
+                }
+            return buckets;
+        }
+
+        /**
+         * A backtracking search for sets of more than 3 cards, whose cards are chosen in increasing position.
+         * A partial combination is dropped as soon as a feature is neither all-same nor all-different in it. Once
+         * two cards agree on a feature, only cards with that value are tried next (from the value's bucket), and
+         * the last card is not searched for at all: it is computed from the others and looked up in the bitmap.
+         */
+        private class Solver {
+
+            /**
+             * The cards chosen so far (in increasing position).
+             */
+            private final int[] combination = new int[featureSize];
+
+            /**
+             * The positions of the cards chosen so far.
+             */
+            private final int[] positions = new int[featureSize];
+
+            /**
+             * The values seen in each feature by the first m chosen cards, as bit masks at [m * featureCount + f].
+             */
+            private final int[] values = new int[(featureSize + 1) * featureCount];
+
+            /**
+             * The card positions having each value of each feature (see buckets()).
+             */
+            private final int[][] buckets = buckets();
+
+            /**
+             * The array handed to the action.
+             */
+            private final int[] set;
+            private final Predicate<int[]> action;
+
+            private Solver(int[] set, Predicate<int[]> action) {
+                this.set = set;
+                this.action = action;
+            }
+
+            /**
+             * Searches the sets whose smallest card is at the given position.
+             *
+             * @return - false iff the search should stop.
+             */
+            private boolean searchFrom(int position) {
+                choose(0, position);
+                return extend(1);
+            }
+
+            private void choose(int chosen, int position) {
+                int card = cards[position];
+                combination[chosen] = card;
+                positions[chosen] = position;
+                for (int f = 0; f < featureCount; ++f)
+                    values[(chosen + 1) * featureCount + f] = values[chosen * featureCount + f] | 1 << features[card * featureCount + f];
+            }
+
+            /**
+             * Extends the first chosen cards with cards at later positions.
+             *
+             * @return - false iff the search should stop.
+             */
+            private boolean extend(int chosen) {
+                if (chosen == featureSize - 1) return completeAndReport();
+
+                // with two cards or more, a feature with a single value must keep it: try only that value's bucket
+                int[] candidates = null;
+                if (chosen >= 2)
+                    for (int f = 0; f < featureCount; ++f) {
+                        int seen = values[chosen * featureCount + f];
+                        if (Integer.bitCount(seen) == 1) {
+                            int[] bucket = buckets[f * featureSize + Integer.numberOfTrailingZeros(seen)];
+                            if (candidates == null || bucket.length < candidates.length) candidates = bucket;
+                        }
+                    }
+
+                // the cards left to choose and then the last card come at later positions
+                int start = positions[chosen - 1] + 1, end = cards.length - (featureSize - 1 - chosen);
+                if (candidates == null) {
+                    for (int position = start; position < end; ++position)
+                        if (fits(chosen, position) && !extendWith(chosen, position)) return false;
+                } else {
+                    int first = Arrays.binarySearch(candidates, start);
+                    for (int i = first < 0 ? -first - 1 : first; i < candidates.length && candidates[i] < end; ++i)
+                        if (fits(chosen, candidates[i]) && !extendWith(chosen, candidates[i])) return false;
+                }
+                return true;
+            }
+
+            private boolean extendWith(int chosen, int position) {
+                choose(chosen, position);
+                return extend(chosen + 1);
+            }
+
+            /**
+             * Checks if a card can join the chosen cards: every feature must still be all-same or all-different.
+             */
+            private boolean fits(int chosen, int position) {
+                int card = cards[position];
+                for (int f = 0; f < featureCount; ++f) {
+                    int seen = values[chosen * featureCount + f];
+                    int value = 1 << features[card * featureCount + f];
+                    int distinct = Integer.bitCount(seen | value);
+                    if (distinct != 1 && distinct != chosen + 1) return false;
+                }
+                return true;
+            }
+
+            /**
+             * Computes the only card that completes the chosen cards to a set and reports the set if that card is
+             * among the cards searched and larger than the chosen ones.
+             *
+             * @return - false iff the search should stop.
+             */
+            private boolean completeAndReport() {
+                int chosen = featureSize - 1;
+                int last = 0;
+                for (int f = 0; f < featureCount; ++f) {
+                    int seen = values[chosen * featureCount + f];
+                    // all same: the same value; all different: the single value missing
+                    int value = Integer.bitCount(seen) == 1 ? seen : ~seen & -1 >>> (Integer.SIZE - featureSize);
+                    last = last * featureSize + Integer.numberOfTrailingZeros(value);
+                }
+                if (last <= combination[chosen - 1] || (present[last / Long.SIZE] & 1L << last) == 0) return true;
+
+                System.arraycopy(combination, 0, set, 0, chosen);
+                set[chosen] = last;
+                return report(set, action);
+            }
+        }
+
+        /**
+         * Hands a set to the action.
+         *
+         * @return - false iff the search should stop.
+         */
+        private boolean report(int[] set, Predicate<int[]> action) {
+            if (action.test(set)) return true;
+            stopped = true;
+            return false;
+        }
+    }
+
+    /**
+     * Runs a search in parallel by splitting the positions of the smallest card of the sets into ranges.
+     * The results of the ranges are concatenated in order, so a full search gives the same list as a sequential one.
+     */
+    private class SearchTask extends RecursiveTask<List<int[]>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final AtomicInteger found;
+        private final int count;
+        private final int from;
+        private final int to;
+
+        private SearchTask(Search search, AtomicInteger found, int count, int from, int to) {
+            this.search = search;
+            this.found = found;
+            this.count = count;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            if (to - from <= SEARCH_GRAIN || found.get() >= count)
+                return search.collect(from, to, found, count);
+
+            int middle = (from + to) >>> 1;
+            SearchTask first = new SearchTask(search, found, count, from, middle);
+            first.fork();
+            List<int[]> second = new SearchTask(search, found, count, middle, to).compute();
+            List<int[]> sets = first.join();
+            sets.addAll(second);
+            return sets;
+        }
+    }
+
+    /**
+     * Computes the card that completes two cards to a legal set when each feature has 3 choices: in each feature
+     * the third value is the one making the sum divisible by 3.
+     */
+    private int thirdCard(int first, int second) {
+        if (index != null) return index.third(first, second);
+
+        int a = first * featureCount, b = second * featureCount;
+        int third = 0;
+        for (int i = 0; i < featureCount; ++i)
+            third = third * 3 + (6 - features[a + i] - features[b + i]) % 3;
+        return third;
+    }
+
+    /**
+     * Checks if three cards form a legal set when each feature has 3 choices.
+     * A feature is all-same or all-different iff the sum of its values is divisible by 3.
+     */
+    private boolean testTriple(int first, int second, int third) {
+        if (index != null) return index.third(first, second) == third;
+
+        int a = first * featureCount, b = second * featureCount, c = third * featureCount;
+        for (int i = 0; i < featureCount; ++i)
+            if ((features[a + i] + features[b + i] + features[c + i]) % 3 != 0) return false;
+        return true;
+    }
+}
@@ -0,0 +1,202 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A simulated clock for running the timing logic without waiting: the time (starting at 0) only moves when the clock
+ * is advanced.
+ * The clock is advanced by hand (advance, advanceTo, advanceToNextDeadline), which wakes the threads whose deadline
+ * came in order, or automatically as a discrete-event clock: once every registered thread (see register) is waiting
+ * on the clock, the time moves to the earliest deadline among them and only the threads waiting for it are woken. No
+ * time passes while a registered thread runs, so the idle time between events is skipped without changing their order.
+ * A registered thread must only block by waiting on the clock, and be woken through it (see Clock::unpark): the clock
+ * cannot tell that a thread blocked elsewhere (on a lock, a queue or a monitor) is idle, and it does not advance until
+ * that thread waits on it again. A thread unparked before it waits runs on: its next wait returns at once, like
+ * LockSupport::park with a permit.
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * A thread waiting for a time.
+     */
+    private static final class Waiter {
+
+        final Thread thread;
+        final long deadline;
+
+        /**
+         * True iff the thread was woken (it runs again even if it did not return from parking yet).
+         */
+        boolean woken;
+
+        Waiter(Thread thread, long deadline) {
+            this.thread = thread;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * True iff the clock advances once all the registered threads wait on it.
+     */
+    private final boolean autoAdvance;
+
+    /**
+     * The current time (only increased, while holding the clock's monitor).
+     */
+    private volatile long now;
+
+    /**
+     * The threads waiting for the clock to be advanced (guarded by the clock's monitor).
+     */
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    /**
+     * The threads the clock waits for before advancing automatically (guarded by the clock's monitor).
+     */
+    private final Set<Thread> registered = new HashSet<>();
+
+    /**
+     * The threads unparked while they were not waiting: their next wait returns at once (guarded by the clock's
+     * monitor).
+     */
+    private final Set<Thread> unparked = new HashSet<>();
+
+    /**
+     * @param autoAdvance - true iff the clock advances once all the registered threads wait on it (false to advance it
+     *                    by hand).
+     */
+    public VirtualClock(boolean autoAdvance) {
+        this.autoAdvance = autoAdvance;
+    }
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public void parkUntil(long deadline) {
+        Waiter waiter;
+        synchronized (this) {
+            if (unparked.remove(Thread.currentThread()) || deadline <= now) return;
+            waiter = new Waiter(Thread.currentThread(), deadline);
+            waiters.add(waiter);
+            advanceIfIdle();
+            if (waiter.woken) { // this was the last registered thread to wait, and its deadline is the next event
+                waiters.remove(waiter);
+                return;
+            }
+        }
+        try {
+            LockSupport.park(this);
+        } finally {
+            synchronized (this) {
+                waiters.remove(waiter);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void unpark(Thread thread) {
+        boolean waiting = false;
+        for (Waiter waiter : waiters)
+            if (waiter.thread == thread && !waiter.woken) {
+                waiter.woken = true;
+                waiting = true;
+            }
+        if (!waiting) unparked.add(thread);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Registers a thread: with automatic advancing, the clock does not advance while it runs. Register a thread
+     * before starting it, so the clock does not advance before it gets to run.
+     */
+    @Override
+    public synchronized void register(Thread thread) {
+        registered.add(thread);
+    }
+
+    /**
+     * Unregisters a thread (before it terminates, or blocks other than on the clock).
+     */
+    @Override
+    public synchronized void unregister(Thread thread) {
+        registered.remove(thread);
+        unparked.remove(thread);
+        advanceIfIdle();
+    }
+
+    /**
+     * Registers the current thread.
+     */
+    public void register() {
+        register(Thread.currentThread());
+    }
+
+    /**
+     * Unregisters the current thread.
+     */
+    public void unregister() {
+        unregister(Thread.currentThread());
+    }
+
+    /**
+     * @return - the number of threads waiting for the clock to be advanced.
+     */
+    public synchronized int waiting() {
+        int waiting = 0;
+        for (Waiter waiter : waiters)
+            if (!waiter.woken) ++waiting;
+        return waiting;
+    }
+
+    /**
+     * Advances the clock by a number of nanoseconds.
+     */
+    public synchronized void advance(long nanos) {
+        advanceTo(now + nanos);
+    }
+
+    /**
+     * Advances the clock to a time (if it is later than the current time) and wakes the threads whose deadline came.
+     */
+    public synchronized void advanceTo(long time) {
+        if (time <= now) return;
+        now = time;
+        for (Waiter waiter : waiters)
+            if (!waiter.woken && waiter.deadline <= time) {
+                waiter.woken = true;
+                LockSupport.unpark(waiter.thread);
+            }
+    }
+
+    /**
+     * Advances the clock to the earliest deadline of the waiting threads (the next event) and wakes them.
+     *
+     * @return - false iff no thread is waiting for a time (other than FOREVER).
+     */
+    public synchronized boolean advanceToNextDeadline() {
+        long next = FOREVER;
+        for (Waiter waiter : waiters)
+            if (!waiter.woken) next = Math.min(next, waiter.deadline);
+        if (next == FOREVER) return false;
+        advanceTo(next);
+        return true;
+    }
+
+    /**
+     * With automatic advancing, advances the clock to the next event if every registered thread waits on it.
+     */
+    private void advanceIfIdle() {
+        if (!autoAdvance || registered.isEmpty()) return;
+        int idle = 0;
+        for (Waiter waiter : waiters)
+            if (!waiter.woken && registered.contains(waiter.thread)) ++idle;
+        if (idle == registered.size()) advanceToNextDeadline();
+    }
+}
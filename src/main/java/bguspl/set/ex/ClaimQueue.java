@@ -0,0 +1,165 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free queue of the sets claimed by the players: any number of player threads offer claims and a single
+ * (dealer) thread takes them.
+ * Offering a claim never blocks - it is linked in with one atomic swap of the tail, and the taking thread is unparked
+ * only if it is waiting for a claim.
+ *
+ * @inv claims are taken in the order their offers swapped the tail
+ */
+class ClaimQueue {
+
+    /**
+     * A set claimed by a player.
+     */
+    static final class Claim {
+
+        /**
+         * The player that claimed the set.
+         */
+        final Player player;
+
+        /**
+         * The time (Clock::nanoTime) when the set was claimed.
+         */
+        final long timestamp;
+
+        /**
+         * The version of the table the set was claimed against.
+         */
+        final long tableVersion;
+
+        /**
+         * The slots of the player's tokens.
+         */
+        final int[] slots;
+
+        /**
+         * The stamps of the slots when the set was claimed (see Table::snapshot).
+         */
+        final long[] stamps;
+
+        /**
+         * The claim offered after this one (null if none yet).
+         */
+        private volatile Claim next;
+
+        /**
+         * @param player       - the player that claimed the set.
+         * @param timestamp    - the time (Clock::nanoTime) when the set was claimed.
+         * @param tableVersion - the version of the table the set was claimed against.
+         * @param slots        - the slots of the player's tokens.
+         * @param stamps       - the stamps of the slots when the set was claimed.
+         */
+        Claim(Player player, long timestamp, long tableVersion, int[] slots, long[] stamps) {
+            this.player = player;
+            this.timestamp = timestamp;
+            this.tableVersion = tableVersion;
+            this.slots = slots;
+            this.stamps = stamps;
+        }
+    }
+
+    /**
+     * The last claim offered (the claims are linked from head to tail).
+     */
+    private final AtomicReference<Claim> tail;
+
+    /**
+     * The last claim taken (a placeholder before the first one). Only used by the taking thread.
+     */
+    private Claim head;
+
+    /**
+     * The thread waiting in poll for a claim (null if none).
+     */
+    private volatile Thread waiting;
+
+    /**
+     * The clock to wait on.
+     */
+    private final Clock clock;
+
+    ClaimQueue() {
+        this(Clock.SYSTEM);
+    }
+
+    /**
+     * @param clock - the clock to wait on.
+     */
+    ClaimQueue(Clock clock) {
+        this.clock = clock;
+        head = new Claim(null, 0, 0, new int[0], new long[0]);
+        tail = new AtomicReference<>(head);
+    }
+
+    /**
+     * Adds a claim to the queue and wakes the thread waiting for one (if any).
+     *
+     * @param claim - the claim (must not have been offered before).
+     */
+    void offer(Claim claim) {
+        tail.getAndSet(claim).next = claim;
+        Thread thread = waiting;
+        if (thread != null) clock.unpark(thread);
+    }
+
+    /**
+     * Takes the first claim in the queue.
+     *
+     * @return - the claim, or null if the queue is empty.
+     */
+    Claim poll() {
+        Claim next = head.next;
+        if (next == null) return null;
+        head = next;
+        return next;
+    }
+
+    /**
+     * Takes the first claim in the queue, waiting for one to be offered if the queue is empty.
+     *
+     * @param timeout - the maximum time to wait.
+     * @param unit    - the unit of the timeout.
+     * @return - the claim, or null if the time is up or the thread was interrupted (the interrupt is cleared).
+     */
+    Claim poll(long timeout, TimeUnit unit) {
+        Claim claim = poll();
+        if (claim != null || timeout <= 0) return claim;
+
+        long deadline = clock.nanoTime() + unit.toNanos(timeout);
+        waiting = Thread.currentThread();
+        try {
+            // announce the wait before checking again, so an offer in between either is seen here or unparks us
+            for (long remaining = unit.toNanos(timeout); remaining > 0; remaining = deadline - clock.nanoTime()) {
+                claim = poll();
+                if (claim != null || Thread.interrupted()) return claim;
+                clock.parkUntil(deadline);
+            }
+            return poll();
+        } finally {
+            waiting = null;
+        }
+    }
+
+    /**
+     * Takes claims from the queue (without waiting).
+     *
+     * @param claims    - the collection to add the claims to (in queue order).
+     * @param maxClaims - the maximum number of claims to take.
+     * @return - the number of claims taken.
+     */
+    int drainTo(Collection<Claim> claims, int maxClaims) {
+        int taken = 0;
+        for (Claim claim; taken < maxClaims && (claim = poll()) != null; ++taken)
+            claims.add(claim);
+        return taken;
+    }
+}
@@ -1,12 +1,12 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.ex.ClaimQueue.Claim;
 
 import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class manages the dealer's threads and data
@@ -25,9 +25,14 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * The legal sets that can still be collected, among the cards in the deck and on the table.
+     */
+    private final DeckSetCounter setsLeft;
 
     /**
      * True iff game should be terminated.
@@ -35,21 +40,27 @@ public class Dealer implements Runnable {
     private volatile boolean terminate;
 
     /**
-     * The time when the dealer needs to reshuffle the deck due to turn timeout.
+     * The time when the dealer needs to reshuffle the deck due to turn timeout (with no turn timeout, see
+     * Config::turnTimeoutMillis, the time when the turn started).
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
     /* ------------------------------ Added fields ------------------------------ */
 
     /**
-     * The time when the dealer thread wakes up.
+     * The interval (in milliseconds) between countdown display updates while the warning (with milliseconds) is shown.
      */
     private long dealerWakeUpTime = 10;
 
     /**
-     * Thread-Safe queue for players with potential set
+     * The sets claimed by the players and not yet checked.
+     */
+    private final ClaimQueue claims;
+
+    /**
+     * The number of claims checked so far (only changed by the dealer thread).
      */
-    private BlockingQueue<Player> playersWithPotSet;
+    private long claimsChecked;
 
     /**
      * Thread-Safe queue for cards to be removed
@@ -61,24 +72,21 @@ public class Dealer implements Runnable {
      */
     private final Thread[] playerThreads;
 
-    /**
-     * Array of AI threads
-     * For human players, aiThread = null
-     */
-    private final Thread[] aiThreads;
 
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        long seed = env.config.randomSeed != 0 ? env.config.randomSeed : new SplittableRandom().nextLong();
+        env.logger.info("deck random seed: " + seed);
+        deck = new Deck(env.config.deckSize, new SplittableRandom(seed));
+        setsLeft = new DeckSetCounter(env);
 
-        this.playersWithPotSet = new ArrayBlockingQueue<>(this.players.length);
+        this.claims = new ClaimQueue(env.clock);
         this.cardsToRemove = new ArrayBlockingQueue<>(env.config.featureSize);
         //The maximum number of cards to be removed and/or empty slots after wards, is all the cards o_O
         // this.hasPotSet = false;
         this.playerThreads = new Thread[env.config.players];
-        this.aiThreads = new Thread[env.config.players]; //for human players, aiThread = null
     }
 
     /**
@@ -87,9 +95,11 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        env.clock.register(Thread.currentThread());
         for (Player player : players) {
             Thread playerThread = new Thread(player);
             playerThreads[player.id] = playerThread;
+            env.clock.register(playerThread);
             playerThread.start();
 
         }
@@ -103,43 +113,42 @@ public class Dealer implements Runnable {
         announceWinners();
         terminate();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        env.clock.unregister(Thread.currentThread());
     }
 
     /**
-     * The inner loop of the dealer thread that runs as long as the countdown did not time out.
+     * The inner loop of the dealer thread that runs as long as the countdown did not time out (with no turn timeout,
+     * as long as there is a legal set on the table).
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
-            sleepUntilWokenOrTimeout();
+        while (!terminate && setsLeft.count() > 0 && !turnOver()) {
+            Claim claim = sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             //note
             //Check if any player has a set
-            try {
-                int count = 0;
-                while(!playersWithPotSet.isEmpty() && count < env.config.players){
-                    Player player = playersWithPotSet.take();
-                    int[] playerTokenCards = getPlayerTokenCards(player.id);
-                    if (checkIfSet(playerTokenCards)){
-                        handlePlayerPoint(player);
-                        for(int card : playerTokenCards){
-                            cardsToRemove.put(card);
-                        }
-                        removeCardsFromTable();
-                    }
-                    else{
-                        handlePlayerPenalty(player);
-                    }
-                    count++;
-                }
-            } catch (InterruptedException ignored) {}
+            if (claim != null) {
+                List<Claim> batch = new ArrayList<>(env.config.players);
+                batch.add(claim);
+                claims.drainTo(batch, env.config.players - 1);
+                handleClaims(batch);
+            }
             // removeCardsFromTable();
             placeCardsOnTable();
 
         }
-        if(System.currentTimeMillis() >= reshuffleTime)
+        if(env.config.turnTimeoutMillis > 0 && turnOver())
             updateTimerDisplay(true);
     }
 
+    /**
+     * @return - true iff the cards on the table should be reshuffled: the countdown timed out, or with no turn timeout
+     * (see Config::turnTimeoutMillis), there is no legal set on the table.
+     */
+    private boolean turnOver() {
+        if (env.config.turnTimeoutMillis > 0) return env.clock.millis() >= reshuffleTime;
+        return !table.hasSet();
+    }
+
     /**
      * Called when the game should be terminated.
      */
@@ -167,66 +176,101 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || setsLeft.count() == 0;
     }
 
-    private int[] getPlayerTokenCards(int player_id) {
-        int[] token_cards = new int[env.config.featureSize];
-
-        int count = 0;
-        for(int slot = 0; slot < env.config.tableSize; slot++)
-            if(table.hasToken(player_id,slot) && table.slotToCard[slot] != null)
-                token_cards[count++] = table.slotToCard[slot];
-
-        return token_cards;
+    /**
+     * Checks whether a claim was made against cards that are no longer on the table (or with missing tokens).
+     * If no card was placed or removed since the claim this takes O(1), otherwise O(featureSize).
+     *
+     * @param claim - the claim.
+     * @return - true iff the claim is stale.
+     */
+    private boolean isStale(Claim claim) {
+        if (claim.slots.length != env.config.featureSize) return true;
+        for (long stamp : claim.stamps)
+            if (Table.stampCard(stamp) == -1) return true;
+        if (claim.tableVersion == table.version()) return false;
+        for (int i = 0; i < claim.slots.length; i++)
+            if (!table.isCurrent(claim.slots[i], claim.stamps[i])) return true;
+        return false;
     }
 
-    private boolean checkIfSet(int[] token_cards) {
-        for (int card : token_cards) {
-            if (table.cardToSlot[card] == null) {
-                return false;
-            }
+    /**
+     * Checks a batch of claims in the order they were made (earliest timestamp first), so when several claims share
+     * cards the earliest legal one collects them. Stale claims - including the ones that lost the race for their
+     * cards - are rejected without a penalty.
+     *
+     * @param batch - the claims (in any order).
+     */
+    void handleClaims(List<Claim> batch) {
+        batch.sort(Comparator.comparingLong(claim -> claim.timestamp));
+        claimsChecked += batch.size();
+        int setSize = env.config.featureSize;
+        int[] claimedCards = new int[batch.size() * setSize];
+        for (int i = 0; i < batch.size(); i++) {
+            Claim claim = batch.get(i);
+            for (int j = 0; j < claim.slots.length; j++)
+                claimedCards[i * setSize + j] = Math.max(Table.stampCard(claim.stamps[j]), 0);
         }
-        return env.util.testSet(token_cards);
+
+        //verify all the claims in one call, then handle them in order
+        BitSet legalSets = env.util.testSets(claimedCards, setSize);
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Claim claim = batch.get(i);
+                if (env.journal != null) {
+                    int[] cards = Arrays.copyOfRange(claimedCards, i * setSize, i * setSize + claim.slots.length);
+                    env.journal.claim(claim.player.id, cards, claim.slots);
+                }
+                if (isStale(claim))
+                    notifyPlayer(claim.player);
+                else if (legalSets.get(i)) {
+                    handlePlayerPoint(claim.player);
+                    for (int j = i * setSize; j < (i + 1) * setSize; j++)
+                        cardsToRemove.put(claimedCards[j]);
+                    removeCardsFromTable();
+                }
+                else
+                    handlePlayerPenalty(claim.player);
+            }
+        } catch (InterruptedException ignored) {}
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
      */
     private void removeCardsFromTable() {
+        table.beginBatch();
         try {
             while(!cardsToRemove.isEmpty()) {
                 int card = cardsToRemove.take();
-                if(table.cardToSlot[card] != null){
-                    int slot = table.cardToSlot[card];
+                int slot = table.cardToSlot[card];
+                if(slot != Table.NONE){
 //                    System.out.println("card " + card + " removed from slot " + slot);
                     table.removeCard(slot);
+                    setsLeft.remove(card);
                 }
             }
         } catch (InterruptedException ignored) {}
+        table.endBatch();
     }
 
     private void notifyPlayer(final Player player) {
-        synchronized(playerThreads[player.id]) {
-            playerThreads[player.id].notify();
-        }
-
-        if(aiThreads[player.id] != null) {
-            synchronized (aiThreads[player.id]) {
-                aiThreads[player.id].notifyAll();
-            }
-        }
+        player.claimChecked();
     }
 
     private void handlePlayerPoint(final Player player) {
-        notifyPlayer(player);
+        if (env.journal != null) env.journal.point(player.id);
         player.point();
+        notifyPlayer(player);
 //        System.out.println("Player " + player.id + " has a set!");
     }
 
     private void handlePlayerPenalty(final Player player) {
-        notifyPlayer(player);
+        if (env.journal != null) env.journal.penalty(player.id);
         player.penalty();
+        notifyPlayer(player);
 //        System.out.println("Player " + player.id + " has no set!");
     }
 
@@ -236,15 +280,11 @@ public class Dealer implements Runnable {
     private void placeCardsOnTable() {
 
         int slots_available = this.env.config.tableSize - table.countCards();
-        if(slots_available > 0 && !deck.isEmpty()) {
-            for (int slot = 0; slot < this.env.config.tableSize && !deck.isEmpty(); slot++) {
-                if (table.slotToCard[slot] == null) {
-                    int card_number = (int) (Math.random() * (deck.size()));
-                    int card = deck.remove(card_number);
-                    table.placeCard(card, slot);
-                }
-            }
+        table.beginBatch();
+        for (int slot = table.freeSlot(); slot != Table.NONE && !deck.isEmpty(); slot = table.freeSlot()) {
+            table.placeCard(deck.draw(), slot);
         }
+        table.endBatch();
         //if there was change in the table, display hints
         if(slots_available > 0 && env.config.hints) {
             table.hints();
@@ -253,12 +293,29 @@ public class Dealer implements Runnable {
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until a player claims a set or until the countdown display has to change, whichever comes first.
+     *
+     * @return - the first set claimed, or null if the time to update the display came first.
+     */
+    private Claim sleepUntilWokenOrTimeout() {
+        return claims.poll(millisUntilTimerEvent(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Computes the time until the next countdown event: the displayed seconds change, the warning starts, or the
+     * turn times out (while the warning is shown, the display changes every dealerWakeUpTime). With no turn timeout,
+     * the next event is the next second of the time elapsed since the turn started.
+     *
+     * @return - the number of milliseconds until the next event.
      */
-    private void sleepUntilWokenOrTimeout() {
-        try {
-            Thread.sleep(dealerWakeUpTime);
-        } catch (InterruptedException ignored) {}
+    private long millisUntilTimerEvent() {
+        if (reshuffleTime == Long.MAX_VALUE) return 0;
+        if (env.config.turnTimeoutMillis <= 0) return 1000 - (env.clock.millis() - reshuffleTime) % 1000;
+        long remaining = reshuffleTime - env.clock.millis();
+        if (remaining <= 0) return 0;
+        if (remaining <= env.config.turnTimeoutWarningMillis) return Math.min(dealerWakeUpTime, remaining);
+        long nextSecond = remaining % 1000 + 1;
+        return Math.min(nextSecond, remaining - env.config.turnTimeoutWarningMillis);
     }
 
 
@@ -267,10 +324,15 @@ public class Dealer implements Runnable {
      */
     private void updateTimerDisplay(boolean reset) {
         if(reset || reshuffleTime == Long.MAX_VALUE) {
-            reshuffleTime = env.config.turnTimeoutMillis + System.currentTimeMillis();
+            reshuffleTime = Math.max(env.config.turnTimeoutMillis, 0) + env.clock.millis();
         }
         //Game timer
-        long time = reshuffleTime - System.currentTimeMillis();
+        if (env.config.turnTimeoutMillis == 0) {
+            this.env.ui.setElapsed(env.clock.millis() - reshuffleTime);
+            return;
+        }
+        if (env.config.turnTimeoutMillis < 0) return; // show nothing
+        long time = reshuffleTime - env.clock.millis();
         boolean warning = time <= this.env.config.turnTimeoutWarningMillis;
         this.env.ui.setCountdown(time,warning);
     }
@@ -279,14 +341,18 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
+        table.beginBatch();
         for(int slot = 0; slot < env.config.tableSize ; slot++) {
-            if(table.slotToCard[slot] != null){
-                Integer card = table.slotToCard[slot];
+            int card = table.slotToCard[slot];
+            if(card != Table.NONE){
                 table.removeCard(slot);
                 deck.add(card);
             }
         }
-        reshuffleTime = env.config.turnTimeoutMillis + System.currentTimeMillis();
+        table.endBatch();
+        deck.shuffle();
+        if (env.journal != null) env.journal.reshuffle();
+        reshuffleTime = Math.max(env.config.turnTimeoutMillis, 0) + env.clock.millis();
     }
 
     /**
@@ -321,12 +387,23 @@ public class Dealer implements Runnable {
      */
     protected void notifyPlayerHasPotSet(int player_id) {
         // hasPotSet = true;
-        try {
-            playersWithPotSet.put(players[player_id]);
-        } catch (InterruptedException ignored) {}
+        long timestamp = env.clock.nanoTime();
+        int[] slots = new int[env.config.featureSize];
+        long[] stamps = new long[slots.length];
+        long version = table.snapshot(player_id, slots, stamps);
+        int count = 0;
+        while (count < slots.length && slots[count] != Table.NONE) ++count;
+        if (count < slots.length) {
+            slots = Arrays.copyOf(slots, count);
+            stamps = Arrays.copyOf(stamps, count);
+        }
+        claims.offer(new Claim(players[player_id], timestamp, version, slots, stamps));
     }
 
-    protected void setPlayerAi(int player_id, Thread aiThread){
-        this.aiThreads[player_id] = aiThread;
+    /**
+     * @return - the number of claims checked so far (read it from the dealer thread, or after it terminated).
+     */
+    public long claimsChecked() {
+        return claimsChecked;
     }
 }
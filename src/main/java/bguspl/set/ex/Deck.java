@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class holds the cards left in the dealer's deck.
+ * Drawing a random card takes O(1): the card drawn is replaced by the last card in the deck. All the randomness comes
+ * from the deck's own generator, so a game with a given seed deals the same cards every time.
+ *
+ * @inv 0 <= size() <= the number of cards in a full deck
+ */
+class Deck {
+
+    /**
+     * The cards in the deck: cards[0..size).
+     */
+    private final int[] cards;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private int size;
+
+    /**
+     * The random generator of the deck (used by the dealer thread only).
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Creates a full deck.
+     *
+     * @param deckSize - the number of cards in a full deck.
+     * @param random   - the random generator of the deck.
+     */
+    Deck(int deckSize, SplittableRandom random) {
+        cards = new int[deckSize];
+        for (int card = 0; card < deckSize; ++card)
+            cards[card] = card;
+        size = deckSize;
+        this.random = random;
+    }
+
+    /**
+     * @return - the number of cards in the deck.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return - true iff there are no cards in the deck.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes a random card from the deck.
+     *
+     * @return - the card id.
+     * @pre - !isEmpty()
+     */
+    int draw() {
+        int i = random.nextInt(size);
+        int card = cards[i];
+        cards[i] = cards[--size];
+        return card;
+    }
+
+    /**
+     * Returns a card to the deck.
+     *
+     * @param card - the card id (must not be in the deck).
+     */
+    void add(int card) {
+        cards[size++] = card;
+    }
+
+    /**
+     * Shuffles the cards in the deck (Fisher-Yates).
+     */
+    void shuffle() {
+        for (int i = size - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+/**
+ * This class counts the legal sets among the cards of the deck that were not removed yet. It starts from the whole
+ * deck, whose sets are counted with a formula, and each card removed only examines the sets that contain that card.
+ *
+ * @inv count() == the number of legal sets among the cards of the deck not removed
+ */
+class DeckSetCounter extends TrackedCards {
+
+    /**
+     * The number of legal sets among the tracked cards.
+     */
+    private long count;
+
+    /**
+     * Creates a counter with all the cards of the deck.
+     *
+     * @param env - the game environment objects.
+     */
+    DeckSetCounter(Env env) {
+        super(env);
+        for (int card = 0; card < env.config.deckSize; ++card)
+            track(card);
+        count = countDeckSets(env.config.featureSize, env.config.featureCount);
+    }
+
+    /**
+     * Counts the legal sets in a whole deck. A set has some number d > 0 of features that are different in all its
+     * cards: the other features have one of featureSize common values each, and the d different features are
+     * arranged in (featureSize!)^(d - 1) ways once the cards are ordered by the first of them.
+     */
+    private static long countDeckSets(int featureSize, int featureCount) {
+        long arrangements = 1;
+        for (int i = 2; i <= featureSize; ++i)
+            arrangements *= i;
+
+        long total = 0;
+        long choose = 1; // featureCount choose d
+        for (int d = 1; d <= featureCount; ++d) {
+            choose = choose * (featureCount - d + 1) / d;
+            long sets = choose;
+            for (int i = 0; i < featureCount - d; ++i)
+                sets *= featureSize;
+            for (int i = 1; i < d; ++i)
+                sets *= arrangements;
+            total += sets;
+        }
+        return total;
+    }
+
+    /**
+     * Removes a card and forgets the sets it belongs to.
+     *
+     * @param card - the card id.
+     */
+    void remove(int card) {
+        if (untrack(card)) forEachSetOf(card, set -> --count);
+    }
+
+    /**
+     * @return - the number of legal sets among the cards not removed.
+     */
+    long count() {
+        return count;
+    }
+}
@@ -1,9 +1,11 @@
 package bguspl.set.ex;
 
+import bguspl.set.Clock;
 import bguspl.set.Env;
 
+import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class manages the players' threads and data
@@ -30,7 +32,7 @@ public class Player implements Runnable {
     /**
      * The thread representing the current player.
      */
-    private Thread playerThread;
+    private volatile Thread playerThread;
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
@@ -55,9 +57,14 @@ public class Player implements Runnable {
     /* ------------------------------ added fields ------------------------------ */
 
     /**
-     * The data structure for the actions performed by the player
+     * The data structure for the actions performed by the player (waited on through the clock, see keyPressed).
      */
-    BlockingQueue<Integer> actions;
+    Queue<Integer> actions;
+
+    /**
+     * The thread waiting in keyPressed for room in the actions queue (null if none).
+     */
+    private volatile Thread keyPresser;
 
     /**
      * The number of tokens placed by the player on the table.
@@ -72,13 +79,18 @@ public class Player implements Runnable {
     /**
      * The time when the player needs to be frozen.
      */
-    private long freezeTime = 0;
+    private volatile long freezeTime = 0;
 
     /**
      * The time interval for the sleep function.
      */
     private final long freezeTimeInterval = 1000;
 
+    /**
+     * True iff the dealer has checked the last set claimed by the player.
+     */
+    private volatile boolean claimChecked;
+
     /**
      * The class constructor.
      *
@@ -110,32 +122,39 @@ public class Player implements Runnable {
 //        System.out.println("Player " + this.id + " started");
         while (!terminate) {
             try{
-                while(freezeTime > 0){
-                    this.env.ui.setFreeze(id, freezeTime);
-                    freezeTime -= freezeTimeInterval;
-                    Thread.sleep(freezeTimeInterval);
+                if (freezeTime > 0) {
+                    while(freezeTime > 0){
+                        this.env.ui.setFreeze(id, freezeTime);
+                        freezeTime -= freezeTimeInterval;
+                        env.clock.sleep(freezeTimeInterval);
+                    }
+                    if (!human) env.clock.unpark(aiThread); // the AI thread waits while the player is frozen
                 }
                 this.env.ui.setFreeze(id, 0);
-                int slot = actions.take();
+                env.clock.await(() -> !actions.isEmpty());
+                int slot = actions.poll();
+                Thread presser = keyPresser;
+                if (presser != null) env.clock.unpark(presser);
 //                System.out.println("Player " + this.id + " took action on slot " + slot);
                 if(table.hasToken(this.id, slot)){
                     table.removeToken(this.id, slot);
-                    this.countTokens--;
                 }
                 else{
-                    if(this.table.slotToCard[slot] != null){
+                    if(this.table.hasCard(slot)){
                         table.placeToken(this.id, slot);
-                        this.countTokens++;
                     }
                 }
+                //the dealer may have removed tokens along with their cards
+                this.countTokens = table.countTokens(this.id);
                 if(this.countTokens == env.config.featureSize){
                     dealer.notifyPlayerHasPotSet(id);
 
-                    synchronized(playerThread){
+                    while(!claimChecked && !terminate){
                         try {
-                            playerThread.wait();
+                            env.clock.await(() -> claimChecked || terminate);
                         } catch (InterruptedException ignored) {}
                     }
+                    claimChecked = false;
 
                     this.countTokens = 0;
                     table.clearTokens(this.id);
@@ -144,12 +163,14 @@ public class Player implements Runnable {
         }
         if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        env.clock.unregister(Thread.currentThread());
     }
 
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses. If the queue of key presses is full, the thread waits until it is not full, and while the player
+     * is frozen the thread waits until the freeze is over (both through the clock).
      */
     private void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
@@ -158,24 +179,20 @@ public class Player implements Runnable {
             env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
                 // TODO implement createArtificialIntelligence() player key press simulator
+                if (freezeTime > 0) {
+                    // the player thread wakes this thread up once the freeze is over (see run)
+                    env.clock.parkUntil(Clock.FOREVER);
+                    continue;
+                }
                 // The AI thread generates a random slot.
-                int randomSlot = (int) (Math.random() * this.env.config.tableSize);
+                int randomSlot = ThreadLocalRandom.current().nextInt(this.env.config.tableSize);
                 keyPressed(randomSlot);
-
-                if(countTokens == env.config.featureSize && freezeTime > 0){
-                    synchronized(aiThread){
-                        try{
-                            aiThread.wait();
-                        }
-                        catch (InterruptedException ignored) {}
-                    }
-                }
-
             }
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+            env.clock.unregister(Thread.currentThread());
         }, "computer-" + id);
+        env.clock.register(aiThread);
         aiThread.start();
-        dealer.setPlayerAi(this.id, this.aiThread);
     }
 
     /**
@@ -196,19 +213,36 @@ public class Player implements Runnable {
     }
 
     /**
-     * This method is called when a key is pressed.
+     * This method is called when a key is pressed. If the queue of key presses is full, waits (through the clock)
+     * until the player thread takes one.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
         // TODO implement keyPressed(int slot)
-        if(freezeTime <= 0 && table.slotToCard[slot] != null){
+        if(freezeTime <= 0 && table.hasCard(slot)){
+            // announced before checking for room, so a take either makes room for the offer or wakes this thread up
+            keyPresser = Thread.currentThread();
             try {
-                actions.put(slot);
-            } catch (InterruptedException ignored) {}
+                env.clock.await(() -> actions.offer(slot));
+            } catch (InterruptedException ignored) {
+            } finally {
+                keyPresser = null;
+            }
+            Thread thread = playerThread;
+            if (thread != null) env.clock.unpark(thread);
         }
     }
 
+    /**
+     * Called by the dealer once it has checked the set claimed by the player: wakes the player thread up.
+     * The flag keeps the wake-up from being lost if the dealer is done before the player thread starts waiting.
+     */
+    protected void claimChecked() {
+        claimChecked = true;
+        env.clock.unpark(playerThread);
+    }
+
     /**
      * Award a point to a player and perform other related actions.
      *
@@ -0,0 +1,72 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class keeps track of the legal sets among a changing collection of cards.
+ * Each card added or removed only examines the sets that contain that card.
+ *
+ * @inv count() == the number of legal sets among the cards added (and not removed)
+ */
+class SetTracker extends TrackedCards {
+
+    /**
+     * The legal sets among the tracked cards (each one sorted, and never changed once found).
+     */
+    private final List<int[]> sets = new ArrayList<>();
+
+    /**
+     * Creates a tracker with no cards.
+     *
+     * @param env - the game environment objects.
+     */
+    SetTracker(Env env) {
+        super(env);
+    }
+
+    /**
+     * Starts tracking a card and records the new sets it forms with the tracked cards.
+     *
+     * @param card - the card id.
+     */
+    void add(int card) {
+        if (contains(card)) return;
+        forEachSetOf(card, set -> sets.add(set.clone()));
+        track(card);
+    }
+
+    /**
+     * Stops tracking a card and forgets the sets it belongs to.
+     *
+     * @param card - the card id.
+     */
+    void remove(int card) {
+        if (!untrack(card)) return;
+        for (int i = sets.size() - 1; i >= 0; --i)
+            if (Arrays.binarySearch(sets.get(i), card) >= 0) {
+                sets.set(i, sets.get(sets.size() - 1));
+                sets.remove(sets.size() - 1);
+            }
+    }
+
+    /**
+     * @return - the number of legal sets among the tracked cards.
+     */
+    long count() {
+        return sets.size();
+    }
+
+    /**
+     * Applies an action to every legal set among the tracked cards.
+     *
+     * @param action - the action (receives the sorted card ids of a set; must not modify them).
+     */
+    void forEach(Consumer<int[]> action) {
+        sets.forEach(action);
+    }
+}
@@ -1,10 +1,14 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.TableDelta;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -20,36 +24,106 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Marks an empty slot, or a card that is not on the table.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    public static final int NONE = -1;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a slot and the card placed in it (NONE if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final int[] slotToCard; // card per slot (if any)
+
+    /**
+     * Mapping between a card and the slot it is in (NONE if none).
+     */
+    protected final int[] cardToSlot; // slot per card (if any)
 
     /* ------------------------------ added fields ------------------------------ */
 
     /**
      * data structure for the tokens placed on the table.
      */
-    private final boolean[][] tokens;
+    private final TokenIndex tokens;
+
+    /**
+     * The legal sets among the cards on the table (updated whenever a card is placed or removed). Only used by the
+     * dealer thread.
+     */
+    private final SetTracker sets;
+
+    /**
+     * The legal sets among the cards the players see on the table, published by the dealer thread whenever they are
+     * shown (see sets()).
+     */
+    private volatile List<int[]> visibleSets = Collections.emptyList();
+
+    /**
+     * The version of the table: incremented before and after every card placed or removed (with the tokens on it), so
+     * it is odd while the slots are being changed (only changed by the dealer thread).
+     */
+    private volatile long version;
+
+    /**
+     * The stamp of each slot: the number of times its card changed (high 32 bits) and its card id + 1 (low 32 bits,
+     * 0 if none). A stamp is read atomically, so it always matches the card it was read with.
+     */
+    private final AtomicLongArray slotStamps;
+
+    /**
+     * The empty slots, as a stack: freeSlots[0..freeSlotCount) (the top is the last one).
+     */
+    private final int[] freeSlots;
+
+    /**
+     * The position of each empty slot in freeSlots (NONE if the slot has a card).
+     */
+    private final int[] freeSlotPositions;
+
+    /**
+     * The number of empty slots.
+     */
+    private int freeSlotCount;
+
+    /**
+     * The display changes of the cards placed and removed since beginBatch (null if not in a batch). Only used by
+     * the dealer thread.
+     */
+    private TableDelta batch;
+
+    /**
+     * The slots whose card was placed since beginBatch: their stamps are only set by endBatch, once the batch is
+     * shown. Only used by the dealer thread.
+     */
+    private final boolean[] unstamped;
 
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (NONE if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (NONE if none).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
 
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
 
-        tokens = new boolean[env.config.players][env.config.tableSize];
+        tokens = new TokenIndex(env.config.players, env.config.tableSize);
+        sets = new SetTracker(env);
+        slotStamps = new AtomicLongArray(slotToCard.length);
+        unstamped = new boolean[slotToCard.length];
+        freeSlots = new int[slotToCard.length];
+        freeSlotPositions = new int[slotToCard.length];
+        for (int slot = slotToCard.length - 1; slot >= 0; --slot) { // the lowest empty slot ends up on top
+            freeSlotPositions[slot] = NONE;
+            if (slotToCard[slot] == NONE) pushFreeSlot(slot);
+            else {
+                slotStamps.set(slot, slotToCard[slot] + 1);
+                sets.add(slotToCard[slot]);
+            }
+        }
+        publishSets();
     }
 
     /**
@@ -59,20 +133,196 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, emptyMapping(env.config.tableSize), emptyMapping(env.config.deckSize));
+    }
+
+    private static int[] emptyMapping(int length) {
+        int[] mapping = new int[length];
+        Arrays.fill(mapping, NONE);
+        return mapping;
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+        sets.forEach(this::printHint);
+    }
+
+    private void printHint(int[] set) {
+        StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
+        List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
+        int[][] features = env.util.cardsToFeatures(set);
+        System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
+    }
+
+    /**
+     * Count the number of legal sets currently on the table. Only called by the dealer thread (see sets()).
+     *
+     * @return - the number of legal sets on the table.
+     */
+    public int countSets() {
+        return (int) sets.count();
+    }
+
+    /**
+     * Only called by the dealer thread (see sets()).
+     *
+     * @return - true iff there is at least one legal set on the table.
+     */
+    public boolean hasSet() {
+        return sets.count() > 0;
+    }
+
+    /**
+     * Applies an action to every legal set currently on the table. Only called by the dealer thread (see sets()).
+     *
+     * @param action - the action (receives the sorted card ids of a set; must not modify them).
+     */
+    public void forEachSet(Consumer<int[]> action) {
+        sets.forEach(action);
+    }
+
+    /**
+     * Reads the legal sets on the table from any thread, as the players see the table: the sets change along with
+     * the cards the players see (see hasCard).
+     *
+     * @return - an immutable list of the sorted card ids of each set (the arrays must not be modified).
+     */
+    public List<int[]> sets() {
+        return visibleSets;
+    }
+
+    /**
+     * Publishes the current legal sets to the players (only called by the dealer thread, once the cards are seen).
+     * The tracker never changes the arrays of its sets, so the list shares them.
+     */
+    private void publishSets() {
+        List<int[]> visible = new ArrayList<>((int) sets.count());
+        sets.forEach(visible::add);
+        visibleSets = Collections.unmodifiableList(visible);
+    }
+
+    /**
+     * @return - the current version of the table: it changes whenever a card is placed or removed.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Reads a consistent snapshot of some slots from any thread: the read is retried while the dealer changes the
+     * table, so all the stamps are from the same version of the table.
+     *
+     * @param slots  - the slots to read.
+     * @param stamps - filled with the stamp of each slot (see stampCard).
+     * @return - the version of the table the stamps are from.
+     */
+    public long snapshot(int[] slots, long[] stamps) {
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                for (int i = 0; i < slots.length; ++i)
+                    stamps[i] = slotStamps.get(slots[i]);
+                if (version == before)
+                    return before;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Reads a consistent snapshot of a player's tokens and of the cards under them from any thread, like
+     * snapshot(int[], long[]): the dealer removes the tokens on a card along with it, so the tokens are read in the
+     * same version of the table as the cards.
+     *
+     * @param player - the player.
+     * @param slots  - filled with the slots of the player's tokens in increasing order (as many as fit), then NONE.
+     * @param stamps - filled with the stamp of each of these slots (see stampCard), then 0.
+     * @return - the version of the table the tokens and the stamps are from.
+     */
+    public long snapshot(int player, int[] slots, long[] stamps) {
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                int count = tokens.slotsOf(player, slots);
+                for (int i = 0; i < slots.length; ++i)
+                    if (i < count) stamps[i] = slotStamps.get(slots[i]);
+                    else {
+                        slots[i] = NONE;
+                        stamps[i] = 0;
+                    }
+                if (version == before)
+                    return before;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @param slot  - the slot.
+     * @param stamp - a stamp read from the slot (see snapshot).
+     * @return - true iff the card in the slot did not change since the stamp was read.
+     */
+    public boolean isCurrent(int slot, long stamp) {
+        return slotStamps.get(slot) == stamp;
+    }
+
+    /**
+     * @param stamp - a stamp read from a slot (see snapshot).
+     * @return - the id of the card that was in the slot, or NONE if it was empty.
+     */
+    public static int stampCard(long stamp) {
+        return (int) stamp - 1;
+    }
+
+    /**
+     * Checks from any thread whether there is a card in a slot. A card placed in a batch is only there once the batch
+     * is shown (see endBatch).
+     *
+     * @param slot - the slot.
+     * @return - true iff there is a card in the slot.
+     */
+    public boolean hasCard(int slot) {
+        return stampCard(slotStamps.get(slot)) != NONE;
+    }
+
+    /**
+     * Changes the card in a slot and its stamp, and keeps the stack of empty slots (only called by the dealer thread,
+     * while the version is odd). In a batch, the stamp of a card placed is left to endBatch.
+     *
+     * @param slot - the slot.
+     * @param card - the card id, or NONE to empty the slot.
+     */
+    private void setSlot(int slot, int card) {
+        slotToCard[slot] = card;
+        unstamped[slot] = batch != null && card != NONE;
+        if (!unstamped[slot]) stampSlot(slot, card);
+
+        if (card == NONE && freeSlotPositions[slot] == NONE) pushFreeSlot(slot);
+        else if (card != NONE && freeSlotPositions[slot] != NONE) {
+            int position = freeSlotPositions[slot];
+            freeSlots[position] = freeSlots[--freeSlotCount];
+            freeSlotPositions[freeSlots[position]] = position;
+            freeSlotPositions[slot] = NONE;
+        }
+    }
+
+    private void stampSlot(int slot, int card) {
+        long changes = (slotStamps.get(slot) >>> 32) + 1;
+        slotStamps.set(slot, changes << 32 | card + 1);
+    }
+
+    private void pushFreeSlot(int slot) {
+        freeSlotPositions[slot] = freeSlotCount;
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    /**
+     * @return - an empty slot (the most recently emptied one), or NONE if the table is full.
+     */
+    public int freeSlot() {
+        return freeSlotCount == 0 ? NONE : freeSlots[freeSlotCount - 1];
     }
 
     /**
@@ -81,11 +331,36 @@ public class Table {
      * @return - the number of cards on the table.
      */
     public int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+        return slotToCard.length - freeSlotCount;
+    }
+
+    /**
+     * Starts a batch: the display changes of the cards placed and removed from now on (and of the tokens removed
+     * with them) are shown together by endBatch. Only called by the dealer thread.
+     */
+    public void beginBatch() {
+        if (batch == null) batch = new TableDelta();
+    }
+
+    /**
+     * Ends a batch: shows the display changes collected since beginBatch as one update, and only then lets the players
+     * see the cards placed in it, so a token placed on one of them is shown after its card.
+     */
+    public void endBatch() {
+        TableDelta delta = batch;
+        batch = null;
+        if (delta != null && !delta.isEmpty()) env.ui.apply(delta);
+
+        boolean stamped = false;
+        for (int slot = 0; slot < unstamped.length; ++slot)
+            if (unstamped[slot]) {
+                if (!stamped) ++version;
+                stamped = true;
+                unstamped[slot] = false;
+                stampSlot(slot, slotToCard[slot]);
+            }
+        if (stamped) ++version;
+        if (delta != null) publishSets();
     }
 
     /**
@@ -95,14 +370,20 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-
+        int replaced = slotToCard[slot];
+        if (replaced != NONE) {
+            cardToSlot[replaced] = NONE;
+            sets.remove(replaced);
+        }
         cardToSlot[card] = slot;
-        slotToCard[slot] = card;
-
-        this.env.ui.placeCard(card,slot);
+        // the card is shown before the players can see it, so a token placed on it is never shown before it
+        if (batch != null) batch.placeCard(card, slot);
+        else this.env.ui.placeCard(card,slot);
+        ++version;
+        setSlot(slot, card);
+        ++version;
+        sets.add(card);
+        if (batch == null) publishSets();
     }
 
     /**
@@ -110,29 +391,33 @@ public class Table {
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-
-        for(int player = 0; player < env.config.players; player++) {
-            removeToken(player,slot);
+        ++version;
+        if (batch != null) {
+            if (tokens.clearSlot(slot, player -> {})) batch.removeTokens(slot);
+            batch.removeCard(slot);
+        } else {
+            tokens.clearSlot(slot, player -> this.env.ui.removeToken(player, slot));
+            this.env.ui.removeCard(slot);
         }
-        this.env.ui.removeCard(slot);
-        if(slotToCard[slot] != null) {
-            int card = slotToCard[slot];
-            slotToCard[slot] = null;
-            cardToSlot[card] = null;
+        int card = slotToCard[slot];
+        if(card != NONE) setSlot(slot, NONE);
+        ++version;
+        if(card != NONE) {
+            cardToSlot[card] = NONE;
+            sets.remove(card);
+            if (batch == null) publishSets();
         }
     }
 
     /**
-     * Places a player token on a grid slot.
+     * Places a player token on a grid slot, if there is a card in it (see hasCard).
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
     public void placeToken(int player, int slot) {
-        this.env.ui.placeToken(player,slot);
-        tokens[player][slot] = true;
+        if(hasCard(slot) && tokens.add(player, slot)) {
+            this.env.ui.placeToken(player,slot);
+        }
     }
 
     /**
@@ -142,9 +427,8 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
-        if(tokens[player][slot]) {
+        if(tokens.remove(player, slot)) {
             this.env.ui.removeToken(player,slot);
-            tokens[player][slot] = false;
             return true;
         }
         return false;
@@ -154,7 +438,25 @@ public class Table {
      * checks if a token of a player is placed on a grid slot.
      */
     public boolean hasToken(int player_id, int slot) {
-        return tokens[player_id][slot];
+        return tokens.contains(player_id, slot);
+    }
+
+    /**
+     * @param player - the player.
+     * @return - the number of tokens the player has on the table.
+     */
+    public int countTokens(int player) {
+        return tokens.count(player);
+    }
+
+    /**
+     * Finds the slots on which a player has tokens.
+     * @param player - the player.
+     * @param slots  - filled with the slots, in increasing order (as many as fit).
+     * @return       - the number of slots filled.
+     */
+    public int tokenSlots(int player, int[] slots) {
+        return tokens.slotsOf(player, slots);
     }
 
     /**
@@ -162,11 +464,7 @@ public class Table {
      * @param player - the player whose tokens should be removed.
      */
     public void clearTokens(int player) {
-        for(int i = 0; i < env.config.tableSize; i++) {
-            if(tokens[player][i]) {
-                removeToken(player,i);
-            }
-        }
+        tokens.clearPlayer(player, slot -> this.env.ui.removeToken(player, slot));
     }
 
 
@@ -0,0 +1,137 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * This class keeps the tokens placed on the table as bitmasks with two views: the slots of each player and the
+ * players on each slot. All the operations are lock-free, and finding or clearing the tokens of a player or of a
+ * slot takes a few word operations instead of a scan.
+ * A token is added to the player's view before the slot's view and cleared from a slot's view before the players'
+ * views, so the two views agree once concurrent changes of the same token are done.
+ *
+ * @inv contains(player, slot) iff the player's bit is set in the slot's view
+ */
+class TokenIndex {
+
+    /**
+     * The number of words in the bitmask of each player (one bit per slot).
+     */
+    private final int slotWords;
+
+    /**
+     * The number of words in the bitmask of each slot (one bit per player).
+     */
+    private final int playerWords;
+
+    /**
+     * The slots of each player's tokens: the words of player p are at [p * slotWords, (p + 1) * slotWords).
+     */
+    private final AtomicLongArray playerSlots;
+
+    /**
+     * The players with a token on each slot: the words of slot s are at [s * playerWords, (s + 1) * playerWords).
+     */
+    private final AtomicLongArray slotPlayers;
+
+    /**
+     * @param players - the number of players.
+     * @param slots   - the number of slots on the table.
+     */
+    TokenIndex(int players, int slots) {
+        slotWords = (slots + Long.SIZE - 1) / Long.SIZE;
+        playerWords = (players + Long.SIZE - 1) / Long.SIZE;
+        playerSlots = new AtomicLongArray(players * slotWords);
+        slotPlayers = new AtomicLongArray(slots * playerWords);
+    }
+
+    /**
+     * Adds a token.
+     *
+     * @return - true iff the player had no token on the slot.
+     */
+    boolean add(int player, int slot) {
+        long bit = 1L << slot;
+        long old = playerSlots.getAndAccumulate(player * slotWords + slot / Long.SIZE, bit, (word, b) -> word | b);
+        slotPlayers.getAndAccumulate(slot * playerWords + player / Long.SIZE, 1L << player, (word, b) -> word | b);
+        return (old & bit) == 0;
+    }
+
+    /**
+     * Removes a token.
+     *
+     * @return - true iff the player had a token on the slot.
+     */
+    boolean remove(int player, int slot) {
+        long bit = 1L << slot;
+        long old = playerSlots.getAndAccumulate(player * slotWords + slot / Long.SIZE, ~bit, (word, b) -> word & b);
+        slotPlayers.getAndAccumulate(slot * playerWords + player / Long.SIZE, ~(1L << player), (word, b) -> word & b);
+        return (old & bit) != 0;
+    }
+
+    /**
+     * @return - true iff the player has a token on the slot.
+     */
+    boolean contains(int player, int slot) {
+        return (playerSlots.get(player * slotWords + slot / Long.SIZE) & 1L << slot) != 0;
+    }
+
+    /**
+     * @return - the number of tokens the player has on the table.
+     */
+    int count(int player) {
+        int count = 0;
+        for (int i = player * slotWords; i < (player + 1) * slotWords; ++i)
+            count += Long.bitCount(playerSlots.get(i));
+        return count;
+    }
+
+    /**
+     * Finds the slots of a player's tokens.
+     *
+     * @param player - the player.
+     * @param slots  - filled with the slots, in increasing order (as many as fit).
+     * @return - the number of slots filled.
+     */
+    int slotsOf(int player, int[] slots) {
+        int count = 0;
+        for (int i = 0; i < slotWords && count < slots.length; ++i)
+            for (long word = playerSlots.get(player * slotWords + i); word != 0 && count < slots.length; word &= word - 1)
+                slots[count++] = i * Long.SIZE + Long.numberOfTrailingZeros(word);
+        return count;
+    }
+
+    /**
+     * Removes all the tokens of a player.
+     *
+     * @param player  - the player.
+     * @param removed - called with the slot of each token removed.
+     */
+    void clearPlayer(int player, IntConsumer removed) {
+        for (int i = 0; i < slotWords; ++i)
+            for (long word = playerSlots.getAndSet(player * slotWords + i, 0); word != 0; word &= word - 1) {
+                int slot = i * Long.SIZE + Long.numberOfTrailingZeros(word);
+                slotPlayers.getAndAccumulate(slot * playerWords + player / Long.SIZE, ~(1L << player), (w, b) -> w & b);
+                removed.accept(slot);
+            }
+    }
+
+    /**
+     * Removes all the tokens on a slot.
+     *
+     * @param slot    - the slot.
+     * @param removed - called with the player of each token removed.
+     * @return - true iff a token was removed.
+     */
+    boolean clearSlot(int slot, IntConsumer removed) {
+        boolean any = false;
+        for (int i = 0; i < playerWords; ++i)
+            for (long word = slotPlayers.getAndSet(slot * playerWords + i, 0); word != 0; word &= word - 1) {
+                int player = i * Long.SIZE + Long.numberOfTrailingZeros(word);
+                playerSlots.getAndAccumulate(player * slotWords + slot / Long.SIZE, ~(1L << slot), (w, b) -> w & b);
+                removed.accept(player);
+                any = true;
+            }
+        return any;
+    }
+}
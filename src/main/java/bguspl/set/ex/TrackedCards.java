@@ -0,0 +1,271 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.SetIndex;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * This class keeps a changing collection of cards and finds the legal sets that a card makes with them, examining only
+ * the sets that contain that card. It is the base of the trackers that follow the legal sets among the cards.
+ */
+class TrackedCards {
+
+    /**
+     * Marks a card that is not tracked.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The shared index of the deck's sets (null if the deck is not indexed).
+     */
+    private final SetIndex setIndex;
+
+    /**
+     * The number of cards in a set.
+     */
+    private final int setSize;
+
+    /**
+     * The number of features on each card.
+     */
+    private final int featureCount;
+
+    /**
+     * The features of all cards in the deck (only when there is no index): card c's are at [c * featureCount, ...).
+     */
+    private final int[] features;
+
+    /**
+     * The tracked cards (in no particular order).
+     */
+    private final int[] cards;
+
+    /**
+     * The position of each card in the cards array (NONE if not tracked).
+     */
+    private final int[] positions;
+
+    /**
+     * The number of tracked cards.
+     */
+    private int size;
+
+    /**
+     * The combination of tracked cards examined while looking for the sets that contain a card (reused).
+     */
+    private final int[] combination;
+
+    /**
+     * The values seen in each feature by the first m cards of the combination, as bit masks at [m * featureCount + f].
+     */
+    private final int[] values;
+
+    /**
+     * The sorted cards of a set handed to an action (reused).
+     */
+    private final int[] found;
+
+    /**
+     * Creates a collection with no cards.
+     *
+     * @param env - the game environment objects.
+     */
+    TrackedCards(Env env) {
+        setIndex = SetIndex.of(env.config);
+        setSize = env.config.featureSize;
+        featureCount = env.config.featureCount;
+
+        if (setIndex == null) {
+            features = new int[env.config.deckSize * featureCount];
+            for (int card = 0; card < env.config.deckSize; ++card)
+                System.arraycopy(env.util.cardToFeatures(card), 0, features, card * featureCount, featureCount);
+        } else features = null;
+
+        cards = new int[env.config.deckSize];
+        positions = new int[env.config.deckSize];
+        Arrays.fill(positions, NONE);
+        combination = new int[setSize];
+        values = new int[setSize * featureCount];
+        found = new int[setSize];
+    }
+
+    /**
+     * Starts tracking a card.
+     *
+     * @param card - the card id.
+     * @return - true iff the card was not tracked.
+     */
+    boolean track(int card) {
+        if (positions[card] != NONE) return false;
+        positions[card] = size;
+        cards[size++] = card;
+        return true;
+    }
+
+    /**
+     * Stops tracking a card.
+     *
+     * @param card - the card id.
+     * @return - true iff the card was tracked.
+     */
+    boolean untrack(int card) {
+        int position = positions[card];
+        if (position == NONE) return false;
+
+        cards[position] = cards[--size];
+        positions[cards[position]] = position;
+        positions[card] = NONE;
+        return true;
+    }
+
+    /**
+     * @return - true iff the card is tracked.
+     */
+    boolean contains(int card) {
+        return positions[card] != NONE;
+    }
+
+    /**
+     * Finds the legal sets made of a card and tracked cards.
+     *
+     * @param card   - the card id (should not be tracked).
+     * @param action - called with the sorted card ids of each set (the array is reused between calls).
+     */
+    void forEachSetOf(int card, Consumer<int[]> action) {
+        if (setIndex != null && size > setIndex.setsPerCard()) {
+            // fewer sets contain the card than there are tracked cards: check each of them instead
+            for (int i = 0; i < setIndex.setsPerCard(); ++i) {
+                int set = setIndex.setOf(card, i);
+                boolean tracked = true;
+                for (int j = 0; j < 3; ++j)
+                    tracked &= setIndex.card(set, j) == card || positions[setIndex.card(set, j)] != NONE;
+                if (tracked) {
+                    for (int j = 0; j < 3; ++j)
+                        found[j] = setIndex.card(set, j);
+                    action.accept(found);
+                }
+            }
+        } else if (setIndex != null) {
+            for (int i = 0; i < size; ++i) {
+                int third = setIndex.third(card, cards[i]);
+                if (positions[third] > i) { // each set is found twice, keep the first
+                    found[0] = card;
+                    found[1] = cards[i];
+                    found[2] = third;
+                    Arrays.sort(found);
+                    action.accept(found);
+                }
+            }
+        } else if (setSize == 2) {
+            // every feature of two different cards is either the same or different: any tracked card completes a pair
+            for (int i = 0; i < size; ++i) {
+                found[0] = Math.min(card, cards[i]);
+                found[1] = Math.max(card, cards[i]);
+                action.accept(found);
+            }
+        } else {
+            choose(0, card);
+            forEachCombination(1, action);
+        }
+    }
+
+    /**
+     * Extends combination[0..chosen) (the new card, then tracked cards in increasing id order) with larger tracked
+     * cards. A card is only chosen if every feature is still all-same or all-different, and once two cards are chosen
+     * the values each feature may take are known: when they make fewer cards than there are tracked cards, those
+     * cards are computed and looked up instead of scanning the tracked cards. The last card is always computed.
+     */
+    private void forEachCombination(int chosen, Consumer<int[]> action) {
+        if (chosen == setSize - 1) {
+            int last = complete();
+            if (last > combination[chosen - 1] && positions[last] != NONE) {
+                combination[chosen] = last;
+                System.arraycopy(combination, 0, found, 0, setSize);
+                Arrays.sort(found);
+                action.accept(found);
+            }
+            return;
+        }
+        if (chosen >= 2 && candidates(chosen) <= size) {
+            forEachCandidate(chosen, 0, 0, false, action);
+            return;
+        }
+        for (int i = 0; i < size; ++i)
+            if ((chosen == 1 || cards[i] > combination[chosen - 1]) && fits(chosen, cards[i])) {
+                choose(chosen, cards[i]);
+                forEachCombination(chosen + 1, action);
+            }
+    }
+
+    /**
+     * Computes the candidates for the next card feature by feature (from the most significant digit of the card id),
+     * skipping the ones that are not larger than the last card chosen, and extends the combination with the tracked
+     * ones.
+     *
+     * @param larger - true iff the features computed so far already make the card larger than the last card chosen.
+     */
+    private void forEachCandidate(int chosen, int feature, int card, boolean larger, Consumer<int[]> action) {
+        if (feature == featureCount) {
+            if (larger && positions[card] != NONE) {
+                choose(chosen, card);
+                forEachCombination(chosen + 1, action);
+            }
+            return;
+        }
+        int seen = values[chosen * featureCount + feature];
+        int bound = larger ? 0 : features[combination[chosen - 1] * featureCount + feature];
+        for (int value = bound; value < setSize; ++value)
+            // with two cards or more chosen, a single value must stay the same and otherwise a new value is needed
+            if ((Integer.bitCount(seen) == 1) == ((seen & 1 << value) != 0))
+                forEachCandidate(chosen, feature + 1, card * setSize + value, larger || value > bound, action);
+    }
+
+    /**
+     * @return - the number of cards that can join the chosen cards (at least two), capped above the tracked cards.
+     */
+    private long candidates(int chosen) {
+        long candidates = 1;
+        for (int i = 0; i < featureCount && candidates <= size; ++i)
+            if (Integer.bitCount(values[chosen * featureCount + i]) > 1) candidates *= setSize - chosen;
+        return candidates;
+    }
+
+    /**
+     * Checks if a card can join the chosen cards: every feature must still be all-same or all-different.
+     */
+    private boolean fits(int chosen, int card) {
+        for (int i = 0; i < featureCount; ++i) {
+            int distinct = Integer.bitCount(values[chosen * featureCount + i] | 1 << features[card * featureCount + i]);
+            if (distinct != 1 && distinct != chosen + 1) return false;
+        }
+        return true;
+    }
+
+    private void choose(int chosen, int card) {
+        combination[chosen] = card;
+        for (int i = 0; i < featureCount; ++i)
+            values[(chosen + 1) * featureCount + i] = values[chosen * featureCount + i] | 1 << features[card * featureCount + i];
+    }
+
+    /**
+     * Computes the card that completes combination[0..setSize - 1) to a legal set: each feature has to be either
+     * the same in all cards or different in all cards (for sets of more than 2 cards, see forEachSetOf).
+     *
+     * @return - the card id or NONE if there is no such card.
+     */
+    private int complete() {
+        int last = 0;
+        for (int i = 0; i < featureCount; ++i) {
+            int seen = values[(setSize - 1) * featureCount + i];
+
+            int value;
+            if (Integer.bitCount(seen) == 1) value = Integer.numberOfTrailingZeros(seen);
+            else if (Integer.bitCount(seen) == setSize - 1) value = Integer.numberOfTrailingZeros(~seen);
+            else return NONE;
+            last = last * setSize + value;
+        }
+        return last;
+    }
+}
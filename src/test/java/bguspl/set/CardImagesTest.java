@@ -0,0 +1,48 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CardImagesTest {
+
+    private static Config config(String cellWidth, String featureCount) {
+        return TestFixtures.config("CellWidth", cellWidth, "FeatureCount", featureCount);
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); ++y)
+            for (int x = 0; x < expected.getWidth(); ++x)
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+    }
+
+    @Test
+    void fromAtlas_SameImagesAsFiles() {
+        Config config = config("258", "4");
+        CardImages atlas = CardImages.fromAtlas(config);
+        CardImages files = CardImages.fromFiles(config);
+        assertNotNull(atlas);
+
+        for (int card = 0; card < config.deckSize; ++card)
+            assertSamePixels(files.cards[card], atlas.cards[card]);
+        assertSamePixels(files.emptyCard, atlas.emptyCard);
+    }
+
+    @Test
+    void load_ScaledToCellSize() {
+        CardImages images = CardImages.load(config("100", "4"));
+        assertEquals(100, images.cards[80].getWidth());
+        assertEquals(100, images.emptyCard.getWidth());
+    }
+
+    @Test
+    void fromAtlas_OnlyForItsDeck() {
+        assertNull(CardImages.fromAtlas(config("258", "3")));
+    }
+}
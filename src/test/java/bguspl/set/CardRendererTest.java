@@ -0,0 +1,61 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardRendererTest {
+
+    private static Config config(String featureSize, String featureCount, String cacheSize) {
+        return TestFixtures.config("FeatureSize", featureSize, "FeatureCount", featureCount,
+                "CardImageCacheSize", cacheSize, "CellWidth", 100, "CellHeight", 60);
+    }
+
+    @Test
+    void image_CachedUpToCapacityLeastRecentlyUsedFirst() {
+        Config config = config("4", "5", "3");
+        CardRenderer renderer = new CardRenderer(config, new UtilPacked(config));
+
+        BufferedImage first = renderer.image(0);
+        assertEquals(100, first.getWidth());
+        assertEquals(60, first.getHeight());
+        renderer.image(1);
+        renderer.image(2);
+        assertSame(first, renderer.image(0));
+
+        // card 1 is the least recently used
+        renderer.image(3);
+        assertEquals(3, renderer.cached());
+        assertSame(first, renderer.image(0));
+
+        for (int card = 0; card < config.deckSize; ++card)
+            renderer.image(card);
+        assertEquals(3, renderer.cached());
+        assertNotSame(first, renderer.image(0));
+    }
+
+    @Test
+    void image_DifferentCardsLookDifferent() {
+        Config config = config("3", "4", "81");
+        CardRenderer renderer = new CardRenderer(config, new UtilPacked(config));
+        BufferedImage a = renderer.image(0);
+        BufferedImage b = renderer.image(config.deckSize - 1);
+
+        boolean different = false;
+        for (int y = 0; y < a.getHeight() && !different; ++y)
+            for (int x = 0; x < a.getWidth() && !different; ++x)
+                different = a.getRGB(x, y) != b.getRGB(x, y);
+        assertTrue(different);
+    }
+
+    @Test
+    void load_NoImagesForLargerDecks() {
+        assertNull(CardImages.load(config("4", "4", "1")));
+    }
+}
@@ -0,0 +1,80 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EventLogTest {
+
+    private Logger logger;
+    private List<String> messages;
+
+    @BeforeEach
+    void setUp() {
+        messages = Collections.synchronizedList(new ArrayList<>());
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (!record.getMessage().startsWith("thread ")) messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        });
+    }
+
+    private static Config config(int capacity) {
+        return TestFixtures.config("EventLogCapacity", capacity);
+    }
+
+    @Test
+    void close_WritesAllEventsInOrder() {
+        EventLog events = new EventLog(logger, config(16));
+        events.start();
+        events.log(EventLog.PLACE_CARD, 5, 2, 0);
+        events.log(new TableDelta().removeTokens(2).removeCard(2));
+        events.log(EventLog.SCORE, 1, 0, 3);
+        events.logWinners(new int[]{1});
+        events.close();
+
+        assertEquals(Arrays.asList(
+                "placing card 5 in slot 2",
+                "applying 2 table changes",
+                "removing tokens from slot 2",
+                "removing card from slot 2",
+                "setting player 2 score to 3",
+                "announcing 1 winner(s)",
+                "announcing winner: player 2"), messages);
+    }
+
+    @Test
+    void log_DropsEventsWhenFull() {
+        EventLog events = new EventLog(logger, config(4));
+        for (int slot = 0; slot < 6; ++slot)
+            events.log(EventLog.REMOVE_CARD, 0, slot, 0);
+        assertEquals(2, events.dropped());
+
+        events.start();
+        events.close();
+        assertEquals(Arrays.asList(
+                "removing card from slot 0",
+                "removing card from slot 1",
+                "removing card from slot 2",
+                "removing card from slot 3",
+                "event log full: dropped 2 events"), messages);
+    }
+}
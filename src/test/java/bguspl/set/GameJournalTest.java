@@ -0,0 +1,60 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class GameJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replay_SameOperationsAsRecorded() throws IOException {
+        Config config = TestFixtures.config("HumanPlayers", 0, "ComputerPlayers", 3, "Rows", 2);
+        Path file = directory.resolve("game.journal");
+
+        UserInterface recorded = mock(UserInterface.class);
+        GameJournal journal = new GameJournal(config, file, recorded);
+        journal.placeCard(7, 1);
+        journal.apply(new TableDelta().placeCard(8, 2).placeToken(0, 2));
+        journal.claim(0, new int[]{7, 8, 9}, new int[]{1, 2, 3});
+        journal.point(0);
+        journal.setScore(0, 1);
+        journal.setCountdown(1500, true);
+        journal.reshuffle();
+        journal.announceWinner(new int[]{0, 2});
+        journal.dispose();
+        verify(recorded).dispose();
+
+        Config replayed = JournalReplay.readConfig(TestFixtures.logger(), file);
+        assertEquals(3, replayed.players);
+        assertEquals(2, replayed.rows);
+        assertEquals(config.deckSize, replayed.deckSize);
+
+        UserInterface ui = mock(UserInterface.class);
+        JournalReplay replay = new JournalReplay(ui, 0);
+        replay.replay(file);
+        assertEquals(journal.size(), replay.records());
+        assertEquals(1, replay.claims());
+        assertEquals(1, replay.points());
+        assertEquals(0, replay.penalties());
+        assertEquals(1, replay.reshuffles());
+
+        InOrder order = inOrder(ui);
+        order.verify(ui).placeCard(7, 1);
+        order.verify(ui).placeCard(8, 2);
+        order.verify(ui).placeToken(0, 2);
+        order.verify(ui).setScore(0, 1);
+        order.verify(ui).setCountdown(1500, true);
+        order.verify(ui).announceWinner(new int[]{0, 2});
+    }
+}
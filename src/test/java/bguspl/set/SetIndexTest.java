@@ -0,0 +1,59 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetIndexTest {
+
+    Config config;
+    SetIndex index;
+    Util util;
+
+    private static Config config(int featureSize, int featureCount) {
+        return TestFixtures.config("FeatureSize", featureSize, "FeatureCount", featureCount);
+    }
+
+    @BeforeEach
+    void setUp() {
+        config = config(3, 4);
+        index = SetIndex.of(config);
+        util = new UtilImpl(config);
+    }
+
+    @Test
+    void of_SharedPerConfiguration() {
+        assertSame(index, SetIndex.of(config(3, 4)));
+        assertNull(SetIndex.of(config(4, 3)));
+    }
+
+    @Test
+    void third_CompletesEveryPair() {
+        for (int a = 0; a < config.deckSize; ++a)
+            for (int b = 0; b < config.deckSize; ++b) {
+                int c = index.third(a, b);
+                assertEquals(c, index.third(b, a));
+                assertTrue(util.testSet(new int[]{a, b, c}));
+            }
+    }
+
+    @Test
+    void sets_AllLegalAndIndexedByCard() {
+        assertEquals(1080, index.setCount());
+        for (int set = 0; set < index.setCount(); ++set) {
+            int[] cards = {index.card(set, 0), index.card(set, 1), index.card(set, 2)};
+            assertTrue(cards[0] < cards[1] && cards[1] < cards[2]);
+            assertTrue(util.testSet(cards));
+        }
+
+        for (int card = 0; card < config.deckSize; ++card)
+            for (int i = 0; i < index.setsPerCard(); ++i) {
+                int set = index.setOf(card, i);
+                assertTrue(index.card(set, 0) == card || index.card(set, 1) == card || index.card(set, 2) == card);
+            }
+    }
+}
@@ -0,0 +1,47 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * The fixtures shared by the tests: a logger that logs nothing, and configurations and environments built from a few
+ * settings (the other settings get their defaults).
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {}
+
+    /**
+     * @return - a logger with no handlers (it logs nothing).
+     */
+    public static Logger logger() {
+        return new MockLogger();
+    }
+
+    /**
+     * @param settings - pairs of a setting name and its value (as in the configuration file), e.g. "FeatureSize", 3.
+     * @return - a configuration with these settings.
+     */
+    public static Config config(Object... settings) {
+        Properties properties = new Properties();
+        for (int i = 0; i + 1 < settings.length; i += 2)
+            properties.put(settings[i].toString(), settings[i + 1].toString());
+        return new Config(logger(), properties);
+    }
+
+    /**
+     * @param config - the configuration.
+     * @param ui     - the user interface.
+     * @param util   - the util.
+     * @return - an environment with these objects, a logger that logs nothing and the system clock.
+     */
+    public static Env env(Config config, UserInterface ui, Util util) {
+        return new Env(logger(), config, ui, util);
+    }
+
+    private static class MockLogger extends Logger {
+        MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class UserInterfaceAsyncTest {
+
+    @Test
+    void cardAndTokenOperations_AppliedInOrderWithoutWaiting() {
+        UserInterface ui = mock(UserInterface.class);
+        Config config = TestFixtures.config("TableDelaySeconds", 0.5);
+        UserInterface async = new UserInterfaceAsync(TestFixtures.logger(), config, ui);
+
+        long start = System.nanoTime();
+        async.placeCard(7, 0);
+        async.placeToken(1, 0);
+        async.apply(new TableDelta().removeTokens(0).removeCard(0));
+        async.placeToken(2, 0);
+        async.setScore(1, 1);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+
+        verify(ui).setScore(1, 1); // passed on at once
+        verify(ui, never()).placeToken(1, 0); // waits for its card
+
+        async.dispose();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1000));
+        InOrder inOrder = inOrder(ui);
+        inOrder.verify(ui).placeCard(7, 0);
+        inOrder.verify(ui).placeToken(1, 0);
+        inOrder.verify(ui).apply(any(TableDelta.class));
+        inOrder.verify(ui).placeToken(2, 0); // not removed by the delta called before it
+        inOrder.verify(ui).dispose();
+    }
+}
@@ -0,0 +1,184 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UtilPackedTest {
+
+    private static Config config(int featureSize, int featureCount) {
+        return config(featureSize, featureCount, 0);
+    }
+
+    private static Config config(int featureSize, int featureCount, int parallelSearchThreshold) {
+        return TestFixtures.config("FeatureSize", featureSize, "FeatureCount", featureCount,
+                "ParallelSearchThreshold", parallelSearchThreshold);
+    }
+
+    @Test
+    void cardToFeatures_MatchesUtilImpl() {
+        Config config = config(3, 4);
+        Util expected = new UtilImpl(config);
+        Util actual = new UtilPacked(config);
+
+        for (int card = 0; card < config.deckSize; ++card)
+            assertArrayEquals(expected.cardToFeatures(card), actual.cardToFeatures(card));
+    }
+
+    @Test
+    void testSet_AllTriplesMatchUtilImpl() {
+        Config config = config(3, 4);
+        Util expected = new UtilImpl(config);
+        Util actual = new UtilPacked(config);
+
+        int[] cards = new int[3];
+        for (cards[0] = 0; cards[0] < config.deckSize; ++cards[0])
+            for (cards[1] = 0; cards[1] < config.deckSize; ++cards[1])
+                for (cards[2] = 0; cards[2] < config.deckSize; ++cards[2])
+                    assertEquals(expected.testSet(cards), actual.testSet(cards));
+    }
+
+    @Test
+    void testSet_LargerFeatureSizeMatchesUtilImpl() {
+        Config config = config(4, 3);
+        Util expected = new UtilImpl(config);
+        Util actual = new UtilPacked(config);
+
+        Random random = new Random(0);
+        int[] cards = new int[config.featureSize];
+        for (int i = 0; i < 100000; ++i) {
+            for (int j = 0; j < cards.length; ++j)
+                cards[j] = random.nextInt(config.deckSize);
+            assertEquals(expected.testSet(cards), actual.testSet(cards));
+        }
+    }
+
+    private static Set<String> asStrings(List<int[]> sets) {
+        return sets.stream().map(set -> IntStream.of(set).sorted().boxed().collect(Collectors.toList()).toString())
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    @Test
+    void findSets_FullDeckMatchesUtilImpl() {
+        Config config = config(3, 4);
+        Util expected = new UtilImpl(config);
+        Util actual = new UtilPacked(config);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+
+        List<int[]> sets = actual.findSets(deck, Integer.MAX_VALUE);
+        assertEquals(1080, sets.size());
+        assertEquals(asStrings(expected.findSets(deck, Integer.MAX_VALUE)), asStrings(sets));
+    }
+
+    @Test
+    void findSets_RandomTablesMatchUtilImpl() {
+        Config config = config(3, 4);
+        Util expected = new UtilImpl(config);
+        Util actual = new UtilPacked(config);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+
+        Random random = new Random(0);
+        for (int i = 0; i < 200; ++i) {
+            Collections.shuffle(deck, random);
+            List<Integer> table = new ArrayList<>(deck.subList(0, 12));
+            assertEquals(asStrings(expected.findSets(table, Integer.MAX_VALUE)), asStrings(actual.findSets(table, Integer.MAX_VALUE)));
+            assertEquals(Math.min(1, expected.findSets(table, 1).size()), actual.findSets(table, 1).size());
+        }
+    }
+
+    @Test
+    void findSets_LargerFeatureSizeMatchesUtilImpl() {
+        for (Config config : new Config[]{config(4, 3), config(5, 2), config(2, 4)}) {
+            Util expected = new UtilImpl(config);
+            Util actual = new UtilPacked(config);
+            List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+            Collections.shuffle(deck, new Random(0));
+
+            assertEquals(asStrings(expected.findSets(deck, Integer.MAX_VALUE)), asStrings(actual.findSets(deck, Integer.MAX_VALUE)));
+            List<Integer> half = deck.subList(0, deck.size() / 2);
+            assertEquals(asStrings(expected.findSets(half, Integer.MAX_VALUE)), asStrings(actual.findSets(half, Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void findSets_LargestFeatureSize() {
+        Config config = config(UtilPacked.MAX_FEATURE_SIZE, 1);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(0));
+        Util util = new UtilPacked(config);
+
+        // the whole deck is the only set: its last card has the one value missing from a 32-bit mask
+        List<int[]> sets = util.findSets(deck, Integer.MAX_VALUE);
+        assertEquals(1, sets.size());
+        assertArrayEquals(IntStream.range(0, config.deckSize).toArray(), sets.get(0));
+        assertEquals(0, util.findSets(deck.subList(1, deck.size()), Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void findSets_ParallelSameAsSerial() {
+        List<Integer> deck = IntStream.range(0, 729).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(0));
+        List<int[]> serial = new UtilPacked(config(3, 6)).findSets(deck, Integer.MAX_VALUE);
+        List<int[]> parallel = new UtilPacked(config(3, 6, 1)).findSets(deck, Integer.MAX_VALUE);
+
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); ++i)
+            assertArrayEquals(serial.get(i), parallel.get(i));
+        assertEquals(10, new UtilPacked(config(3, 6, 1)).findSets(deck, 10).size());
+    }
+
+    @Test
+    void forEachSet_SameSetsAsFindSets() {
+        for (Config config : new Config[]{config(3, 4), config(4, 3)}) {
+            int[] deck = IntStream.range(0, config.deckSize).toArray();
+            List<Integer> boxed = IntStream.of(deck).boxed().collect(Collectors.toList());
+
+            for (Util util : new Util[]{new UtilImpl(config), new UtilPacked(config)}) {
+                List<int[]> sets = new ArrayList<>();
+                assertEquals(util.findSets(boxed, Integer.MAX_VALUE).size(), util.forEachSet(deck, set -> sets.add(set.clone())));
+                assertEquals(asStrings(util.findSets(boxed, Integer.MAX_VALUE)), asStrings(sets));
+
+                int[] wanted = {5};
+                assertEquals(5, util.forEachSet(deck, set -> --wanted[0] > 0));
+            }
+        }
+    }
+
+    @Test
+    void testSets_MatchesTestSet() {
+        for (Config config : new Config[]{config(3, 4), config(4, 3), config(5, 3), config(32, 3)}) {
+            Util expected = new UtilImpl(config);
+            Util actual = new UtilPacked(config);
+            int setSize = config.featureSize;
+
+            // random candidates, then the same candidates turned into sets by varying only the first feature
+            Random random = new Random(0);
+            int[] cards = new int[1000 * setSize];
+            for (int i = 0; i < cards.length; ++i)
+                cards[i] = random.nextInt(config.deckSize);
+            int[] sets = cards.clone();
+            int firstFeature = config.deckSize / config.featureSize;
+            for (int i = 0; i < sets.length; ++i)
+                sets[i] = sets[i - i % setSize] % firstFeature + i % setSize * firstFeature;
+
+            for (int[] candidates : new int[][]{cards, sets}) {
+                BitSet legal = actual.testSets(candidates, setSize);
+                for (int i = 0; i < candidates.length / setSize; ++i)
+                    assertEquals(expected.testSet(Arrays.copyOfRange(candidates, i * setSize, (i + 1) * setSize)), legal.get(i));
+            }
+            assertEquals(1000, actual.testSets(sets, setSize).cardinality());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualClockTest {
+
+    private static void awaitWaiting(VirtualClock clock, int threads) {
+        while (clock.waiting() < threads)
+            Thread.yield();
+    }
+
+    @Test
+    void sleep_AutoAdvanceSkipsTheWait() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(true);
+        clock.register();
+        long start = System.nanoTime();
+        clock.sleep(60_000);
+        clock.sleep(1_000);
+        assertEquals(61_000, clock.millis());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+    }
+
+    @Test
+    void sleep_AutoAdvanceWaitsForAllRegisteredThreads() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(true);
+        clock.register();
+        long[] wokenAt = new long[1];
+        Thread sleeper = new Thread(() -> {
+            clock.register();
+            try {
+                clock.sleep(1_000);
+                wokenAt[0] = clock.millis();
+            } catch (InterruptedException ignored) {}
+            clock.unregister();
+        });
+        sleeper.start();
+
+        // this thread runs, so no time passes for the sleeper
+        awaitWaiting(clock, 1);
+        sleeper.join(50);
+        assertTrue(sleeper.isAlive());
+        assertEquals(0, clock.millis());
+
+        // the earliest deadline is the next event: the sleeper waits on
+        clock.sleep(400);
+        assertEquals(400, clock.millis());
+        assertTrue(sleeper.isAlive());
+
+        clock.unregister();
+        sleeper.join();
+        assertEquals(1_000, wokenAt[0]);
+    }
+
+    @Test
+    void unpark_WokenThreadStopsTheClock() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(true);
+        clock.register();
+        AtomicBoolean offered = new AtomicBoolean();
+        long[] seenAt = new long[1];
+        Thread taker = new Thread(() -> {
+            clock.register();
+            long deadline = TimeUnit.MILLISECONDS.toNanos(5);
+            while (!offered.get() && clock.nanoTime() < deadline)
+                clock.parkUntil(deadline);
+            seenAt[0] = clock.millis();
+            clock.unregister();
+        });
+        taker.start();
+
+        awaitWaiting(clock, 1);
+        offered.set(true);
+        clock.unpark(taker);
+        // the taker runs until it unregisters, however late it gets to, so it sees the offer before its deadline
+        clock.sleep(10);
+        taker.join();
+        assertEquals(0, seenAt[0]);
+        assertEquals(10, clock.millis());
+    }
+
+    @Test
+    void sleep_WokenWhenAdvancedToTheDeadline() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(false);
+        Thread sleeper = new Thread(() -> {
+            try {
+                clock.sleep(1_000);
+            } catch (InterruptedException ignored) {}
+        });
+        sleeper.start();
+
+        awaitWaiting(clock, 1);
+        clock.advance(TimeUnit.MILLISECONDS.toNanos(999));
+        sleeper.join(50);
+        assertTrue(sleeper.isAlive());
+
+        assertTrue(clock.advanceToNextDeadline());
+        sleeper.join();
+        assertEquals(1_000, clock.millis());
+        assertFalse(clock.advanceToNextDeadline());
+    }
+
+    @Test
+    void sleep_Interrupted() {
+        VirtualClock clock = new VirtualClock(false);
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> clock.sleep(1_000));
+        assertEquals(0, clock.waiting());
+    }
+
+    @Test
+    void unpark_BeforeWaitingReturnsAtOnce() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(true);
+        clock.register();
+        clock.unpark(Thread.currentThread());
+        clock.parkUntil(Clock.FOREVER); // would never return if the early unpark were lost
+        assertEquals(0, clock.millis());
+        clock.sleep(10);
+        assertEquals(10, clock.millis());
+    }
+
+    @Test
+    void await_WaitsForeverUntilUnparked() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(false);
+        AtomicBoolean ready = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                clock.await(ready::get);
+            } catch (InterruptedException ignored) {}
+        });
+        waiter.start();
+
+        awaitWaiting(clock, 1);
+        assertFalse(clock.advanceToNextDeadline()); // no time to advance to
+        ready.set(true);
+        clock.unpark(waiter);
+        waiter.join();
+        assertEquals(0, clock.millis());
+    }
+}
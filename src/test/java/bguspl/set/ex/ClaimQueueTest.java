@@ -0,0 +1,104 @@
+package bguspl.set.ex;
+
+import bguspl.set.VirtualClock;
+import bguspl.set.ex.ClaimQueue.Claim;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClaimQueueTest {
+
+    private static Claim claim(long timestamp, long tableVersion) {
+        return new Claim(null, timestamp, tableVersion, new int[0], new long[0]);
+    }
+
+    @Test
+    void poll_InOfferOrder() {
+        ClaimQueue queue = new ClaimQueue();
+        assertNull(queue.poll());
+
+        Claim first = claim(1, 0);
+        Claim second = claim(2, 0);
+        queue.offer(first);
+        queue.offer(second);
+        assertSame(first, queue.poll());
+        assertSame(second, queue.poll(1, TimeUnit.SECONDS));
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void poll_WokenByOffer() throws InterruptedException {
+        ClaimQueue queue = new ClaimQueue();
+        Claim claim = claim(0, 0);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {}
+            queue.offer(claim);
+        });
+
+        producer.start();
+        long start = System.nanoTime();
+        assertSame(claim, queue.poll(1, TimeUnit.MINUTES));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+        producer.join();
+    }
+
+    @Test
+    void poll_TimesOutOnItsClock() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(false);
+        ClaimQueue queue = new ClaimQueue(clock);
+        Claim[] polled = {claim(0, 0)};
+        Thread consumer = new Thread(() -> polled[0] = queue.poll(5, TimeUnit.SECONDS));
+        consumer.start();
+
+        while (clock.waiting() == 0)
+            Thread.yield();
+        clock.advance(TimeUnit.SECONDS.toNanos(4));
+        consumer.join(50);
+        assertTrue(consumer.isAlive());
+
+        clock.advance(TimeUnit.SECONDS.toNanos(1));
+        consumer.join();
+        assertNull(polled[0]);
+    }
+
+    @Test
+    void drainTo_AllClaimsOfConcurrentProducers() throws InterruptedException {
+        ClaimQueue queue = new ClaimQueue();
+        int producers = 4;
+        int claimsPerProducer = 10000;
+
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; ++i) {
+            int producer = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < claimsPerProducer; ++j)
+                    queue.offer(claim(j, producer));
+            });
+            threads[i].start();
+        }
+
+        List<Claim> claims = new ArrayList<>();
+        while (claims.size() < producers * claimsPerProducer) {
+            Claim claim = queue.poll(1, TimeUnit.SECONDS);
+            if (claim != null) claims.add(claim);
+            queue.drainTo(claims, Integer.MAX_VALUE);
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertNull(queue.poll());
+
+        // each producer's claims come out in the order it offered them
+        long[] next = new long[producers];
+        for (Claim claim : claims)
+            assertEquals(next[(int) claim.tableVersion]++, claim.timestamp);
+    }
+}
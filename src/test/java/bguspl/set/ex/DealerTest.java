@@ -0,0 +1,180 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.TestFixtures;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilPacked;
+import bguspl.set.VirtualClock;
+import bguspl.set.ex.ClaimQueue.Claim;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class DealerTest {
+
+    Dealer dealer;
+    private Table table;
+    private Player[] players;
+
+    @BeforeEach
+    void setUp() {
+        // 2 players, a 3x4 table and the 81 cards of featureSize 3 and featureCount 4
+        Config config = TestFixtures.config("TableDelaySeconds", 0);
+        Env env = TestFixtures.env(config, mock(UserInterface.class), new UtilPacked(config));
+        table = spy(new Table(env));
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++) {
+            players[i] = spy(new Player(env, dealer, table, i, false));
+            doNothing().when(players[i]).claimChecked(); // the player threads are not running
+        }
+    }
+
+    /**
+     * Places cards in the first slots.
+     */
+    private void placeCards(int... cards) {
+        for (int slot = 0; slot < cards.length; slot++)
+            table.placeCard(cards[slot], slot);
+    }
+
+    /**
+     * Places a player's tokens and claims them the way Dealer::notifyPlayerHasPotSet does, at a given time.
+     */
+    private Claim claim(int player, long timestamp, int... slots) {
+        for (int slot : slots)
+            table.placeToken(player, slot);
+        int[] claimed = new int[slots.length];
+        long[] stamps = new long[slots.length];
+        long version = table.snapshot(player, claimed, stamps);
+        return new Claim(players[player], timestamp, version, claimed, stamps);
+    }
+
+    @Test
+    void handleClaims_EarliestClaimCollectsSharedSet() {
+
+        placeCards(0, 1, 2, 4); // 0, 1, 2 is a set
+        Claim later = claim(0, 20, 0, 1, 2);
+        Claim earlier = claim(1, 10, 0, 1, 2);
+
+        dealer.handleClaims(new ArrayList<>(Arrays.asList(later, earlier)));
+
+        assertEquals(2, dealer.claimsChecked());
+        verify(players[1]).point();
+        verify(players[0], never()).point();
+        verify(players[0], never()).penalty(); // lost the race: rejected without a penalty
+        verify(players[0]).claimChecked();
+        verify(players[1]).claimChecked();
+        assertFalse(table.hasCard(0));
+        assertTrue(table.hasCard(3));
+        assertEquals(0, table.countTokens(0));
+    }
+
+    @Test
+    void handleClaims_IllegalClaimDoesNotBlockLaterOne() {
+
+        placeCards(0, 1, 2, 3, 4, 6); // 0, 3, 6 is a set, 0, 1, 3 is not
+        Claim illegal = claim(0, 10, 0, 1, 3);
+        Claim legal = claim(1, 20, 0, 3, 5);
+
+        dealer.handleClaims(new ArrayList<>(Arrays.asList(legal, illegal)));
+
+        verify(players[0]).penalty();
+        verify(players[0], never()).point();
+        verify(players[1]).point();
+        verify(players[1], never()).penalty();
+        assertTrue(table.hasCard(1));
+        assertFalse(table.hasCard(0));
+        assertFalse(table.hasCard(3));
+        assertFalse(table.hasCard(5));
+    }
+
+    @Test
+    void handleClaims_ReplacedCardRejectedWithoutPenalty() {
+
+        placeCards(0, 1, 2);
+        Claim claim = claim(0, 10, 0, 1, 2);
+        table.removeCard(1); // the dealer replaces a card between the snapshot and the check
+        table.placeCard(5, 1);
+
+        dealer.handleClaims(new ArrayList<>(Arrays.asList(claim)));
+
+        verify(players[0], never()).point(); // 0, 1, 2 is a set, but card 1 is no longer there
+        verify(players[0], never()).penalty();
+        verify(players[0]).claimChecked();
+        assertTrue(table.hasCard(0));
+        assertTrue(table.hasCard(2));
+    }
+
+    @Test
+    void handleClaims_UnchangedTableComparesVersionOnly() {
+
+        placeCards(0, 1, 2, 4);
+        Claim claim = claim(0, 10, 0, 1, 2);
+
+        dealer.handleClaims(new ArrayList<>(Arrays.asList(claim)));
+
+        verify(table, never()).isCurrent(anyInt(), anyLong());
+        verify(players[0]).point();
+    }
+
+    @Test
+    void handleClaims_OtherSlotChangedComparesStamps() {
+
+        placeCards(0, 1, 2, 4);
+        Claim claim = claim(0, 10, 0, 1, 2);
+        table.removeCard(3);
+        table.placeCard(5, 3);
+
+        dealer.handleClaims(new ArrayList<>(Arrays.asList(claim)));
+
+        verify(table, atLeastOnce()).isCurrent(anyInt(), anyLong());
+        verify(players[0]).point();
+    }
+
+    @Test
+    void run_FreezesAndTurnTimeoutsTakeNoRealTime() {
+
+        // a table of 3 cards seldom has a set, so most turns time out and most claims get a penalty
+        Config config = TestFixtures.config("HumanPlayers", 0, "ComputerPlayers", 2, "FeatureCount", 3,
+                "Rows", 1, "Columns", 3, "RandomSeed", 1, "TurnTimeoutSeconds", 5, "TurnTimeoutWarningSeconds", 0,
+                "PointFreezeSeconds", 1, "PenaltyFreezeSeconds", 3);
+        VirtualClock clock = new VirtualClock(true);
+        Env env = new Env(TestFixtures.logger(), config, mock(UserInterface.class), new UtilPacked(config), null,
+                clock);
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        long start = System.nanoTime();
+        assertTimeoutPreemptively(Duration.ofSeconds(60), dealer::run);
+        long realMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        int maxScore = Arrays.stream(players).mapToInt(Player::score).max().getAsInt();
+        assertTrue(maxScore > 0);
+        assertTrue(dealer.claimsChecked() > maxScore); // there were penalties
+        assertTrue(clock.millis() >= maxScore * config.pointFreezeMillis);
+        assertTrue(clock.millis() > config.turnTimeoutMillis);
+        assertTrue(realMillis < clock.millis());
+    }
+}
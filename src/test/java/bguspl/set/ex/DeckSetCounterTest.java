@@ -0,0 +1,72 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.TestFixtures;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class DeckSetCounterTest {
+
+    private static Env env(int featureSize, int featureCount) {
+        Config config = TestFixtures.config("FeatureSize", featureSize, "FeatureCount", featureCount);
+        return TestFixtures.env(config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    /**
+     * Starts from the whole deck, removes random cards and compares the count with a full search.
+     */
+    private void assertMatchesFullSearch(Env env) {
+        DeckSetCounter counter = new DeckSetCounter(env);
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < env.config.deckSize; ++card)
+            cards.add(card);
+        assertEquals(env.util.findSets(cards, Integer.MAX_VALUE).size(), counter.count());
+
+        Random random = new Random(0);
+        for (int i = 0; i < 3; ++i) {
+            for (int j = 0; j < env.config.deckSize / 4; ++j)
+                counter.remove(cards.remove(random.nextInt(cards.size())));
+            assertEquals(env.util.findSets(cards, Integer.MAX_VALUE).size(), counter.count());
+        }
+    }
+
+    @Test
+    void remove_LargeDeckQuickly() {
+        Env env = env(4, 5);
+        DeckSetCounter counter = new DeckSetCounter(env);
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < env.config.deckSize; ++card)
+            cards.add(card);
+        Collections.shuffle(cards, new Random(0));
+
+        // the dealer removes the cards of every collected set while the claims wait: removing all of them must be
+        // quick, and must leave no sets
+        assertTimeoutPreemptively(Duration.ofSeconds(3), () -> cards.forEach(counter::remove));
+        assertEquals(0, counter.count());
+    }
+
+    @Test
+    void count_IndexedDeck() {
+        assertMatchesFullSearch(env(3, 4));
+    }
+
+    @Test
+    void count_LargerFeatureSize() {
+        assertMatchesFullSearch(env(4, 3));
+    }
+
+    @Test
+    void count_Pairs() {
+        assertMatchesFullSearch(env(2, 4));
+    }
+}
@@ -0,0 +1,51 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    private static int[] drawAll(Deck deck) {
+        int[] cards = new int[deck.size()];
+        for (int i = 0; i < cards.length; ++i)
+            cards[i] = deck.draw();
+        assertTrue(deck.isEmpty());
+        return cards;
+    }
+
+    @Test
+    void draw_EveryCardOnce() {
+        int[] drawn = drawAll(new Deck(81, new SplittableRandom(1)));
+        boolean[] seen = new boolean[81];
+        for (int card : drawn) {
+            assertTrue(!seen[card]);
+            seen[card] = true;
+        }
+    }
+
+    @Test
+    void draw_SameSeedSameCards() {
+        assertArrayEquals(drawAll(new Deck(81, new SplittableRandom(7))), drawAll(new Deck(81, new SplittableRandom(7))));
+    }
+
+    @Test
+    void shuffle_KeepsTheCards() {
+        Deck deck = new Deck(81, new SplittableRandom(3));
+        int[] drawn = new int[10];
+        for (int i = 0; i < drawn.length; ++i)
+            drawn[i] = deck.draw();
+        for (int card : drawn)
+            deck.add(card);
+        deck.shuffle();
+
+        int sum = 0;
+        for (int card : drawAll(deck))
+            sum += card;
+        assertEquals(81 * 80 / 2, sum);
+    }
+}
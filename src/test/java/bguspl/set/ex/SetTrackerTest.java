@@ -0,0 +1,60 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.TestFixtures;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetTrackerTest {
+
+    private static Env env(int featureSize, int featureCount) {
+        Config config = TestFixtures.config("FeatureSize", featureSize, "FeatureCount", featureCount);
+        return TestFixtures.env(config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    /**
+     * Adds and removes random cards and compares the tracked sets with a full search after every change.
+     */
+    private void assertMatchesFullSearch(Env env, int maxCards) {
+        SetTracker tracker = new SetTracker(env);
+        Util util = env.util;
+        List<Integer> cards = new ArrayList<>();
+
+        Random random = new Random(0);
+        for (int i = 0; i < 300; ++i) {
+            if (cards.size() < maxCards && (cards.isEmpty() || random.nextBoolean())) {
+                int card = random.nextInt(env.config.deckSize);
+                if (tracker.contains(card)) continue;
+                tracker.add(card);
+                cards.add(card);
+            } else tracker.remove(cards.remove(random.nextInt(cards.size())));
+
+            assertEquals(util.findSets(cards, Integer.MAX_VALUE).size(), tracker.count());
+            tracker.forEach(set -> assertTrue(util.testSet(set)));
+        }
+    }
+
+    @Test
+    void count_Pairs() {
+        assertMatchesFullSearch(env(2, 4), 8);
+    }
+
+    @Test
+    void count_IndexedDeck() {
+        assertMatchesFullSearch(env(3, 4), 15);
+    }
+
+    @Test
+    void count_LargerFeatureSize() {
+        assertMatchesFullSearch(env(4, 3), 20);
+    }
+}
@@ -2,22 +2,31 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.TableDelta;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private Env env;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
     @BeforeEach
     void setUp() {
@@ -32,34 +41,33 @@ class TableTest {
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
         Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, Table.NONE);
+        Arrays.fill(cardToSlot, Table.NONE);
 
-        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
+        env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
     }
 
     private int fillSomeSlots() {
-        slotToCard[1] = 3;
-        slotToCard[2] = 5;
-        cardToSlot[3] = 1;
-        cardToSlot[5] = 2;
+        table.placeCard(3, 1);
+        table.placeCard(5, 2);
 
         return 2;
     }
 
     private void fillAllSlots() {
         for (int i = 0; i < slotToCard.length; ++i) {
-            slotToCard[i] = i;
-            cardToSlot[i] = i;
+            table.placeCard(i, i);
         }
     }
 
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
     }
 
     @Test
@@ -95,6 +103,165 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void freeSlot_LowestFirstThenMostRecentlyEmptied() {
+
+        assertEquals(0, table.freeSlot());
+        fillAllSlots();
+        assertEquals(Table.NONE, table.freeSlot());
+
+        table.removeCard(1);
+        table.removeCard(3);
+        assertEquals(2, table.countCards());
+        assertEquals(3, table.freeSlot());
+        table.placeCard(7, 3);
+        assertEquals(1, table.freeSlot());
+        assertEquals(3, cardToSlot[7]);
+    }
+
+    @Test
+    void endBatch_AppliesAllChangesAtOnce() {
+
+        List<String> shown = new ArrayList<>();
+        Env env = new Env(this.env.logger, this.env.config, new MockUserInterface() {
+            @Override
+            public void apply(TableDelta delta) {
+                shown.add(delta.toString());
+            }
+            @Override
+            public void placeCard(int card, int slot) {
+                shown.add("card " + card + " to slot " + slot);
+            }
+            @Override
+            public void placeToken(int player, int slot) {
+                shown.add("token of player " + player + " to slot " + slot);
+            }
+        }, new MockUtil());
+        table = new Table(env);
+        table.placeCard(1, 1);
+        table.placeToken(1, 1);
+
+        table.beginBatch();
+        for (int i = 0; i < 4; ++i)
+            if (i != 1) table.placeCard(i, i);
+        assertFalse(table.hasCard(2)); // not shown yet
+        table.placeToken(0, 2);
+        table.removeCard(1); // removes the tokens along with the card
+        table.removeCard(3);
+        assertEquals(2, shown.size());
+        table.endBatch();
+        assertTrue(table.hasCard(2));
+        table.placeToken(0, 2);
+
+        assertEquals(Arrays.asList("card 1 to slot 1", "token of player 1 to slot 1",
+                "card 0 to slot 0, card 2 to slot 2, card 3 to slot 3, tokens from slot 1, card from slot 1, card from slot 3",
+                "token of player 0 to slot 2"), shown);
+        table.endBatch();
+        assertEquals(4, shown.size());
+    }
+
+    @Test
+    void endBatch_StampsTheCardsPlacedInTheBatch() {
+
+        table.placeCard(3, 0);
+        int[] slots = {0, 1};
+        long[] stamps = new long[slots.length];
+        table.beginBatch();
+        table.placeCard(5, 1);
+        long version = table.snapshot(slots, stamps);
+        assertEquals(3, Table.stampCard(stamps[0]));
+        assertEquals(-1, Table.stampCard(stamps[1]));
+
+        table.endBatch();
+        assertNotEquals(version, table.version());
+        assertTrue(table.isCurrent(0, stamps[0]));
+        assertFalse(table.isCurrent(1, stamps[1]));
+        table.snapshot(slots, stamps);
+        assertEquals(5, Table.stampCard(stamps[1]));
+    }
+
+    @Test
+    void countSets_UpdatedOnPlaceAndRemove() {
+
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(4, 2);
+        assertFalse(table.hasSet());
+
+        table.placeCard(2, 3); // 0, 1, 2 differ only in the last feature
+        assertEquals(1, table.countSets());
+        table.forEachSet(set -> assertArrayEquals(new int[]{0, 1, 2}, set));
+
+        table.removeCard(1);
+        assertEquals(0, table.countSets());
+        assertFalse(table.hasSet());
+    }
+
+    @Test
+    void sets_ChangeWhenTheCardsAreShown() {
+
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.beginBatch();
+        table.placeCard(2, 2); // 0, 1, 2 differ only in the last feature
+        assertEquals(1, table.countSets());
+        assertTrue(table.sets().isEmpty()); // not shown yet
+
+        table.endBatch();
+        List<int[]> sets = table.sets();
+        assertEquals(1, sets.size());
+        assertArrayEquals(new int[]{0, 1, 2}, sets.get(0));
+
+        table.removeCard(1);
+        assertTrue(table.sets().isEmpty());
+        assertEquals(1, sets.size()); // a list read before is not changed
+    }
+
+    @Test
+    void snapshot_StampsChangeWithTheirSlots() {
+
+        table.placeCard(3, 0);
+        table.placeCard(5, 1);
+        int[] slots = {0, 1, 2};
+        long[] stamps = new long[slots.length];
+        long version = table.snapshot(slots, stamps);
+        assertEquals(version, table.version());
+        assertEquals(3, Table.stampCard(stamps[0]));
+        assertEquals(5, Table.stampCard(stamps[1]));
+        assertEquals(-1, Table.stampCard(stamps[2]));
+
+        table.removeCard(1);
+        table.placeCard(5, 1);
+        assertNotEquals(version, table.version());
+        assertTrue(table.isCurrent(0, stamps[0]));
+        assertFalse(table.isCurrent(1, stamps[1])); // same card, but placed again
+        assertTrue(table.isCurrent(2, stamps[2]));
+    }
+
+    @Test
+    void snapshot_TokensRemovedWithTheirCards() {
+
+        table.placeCard(3, 0);
+        table.placeCard(5, 1);
+        table.placeToken(0, 0);
+        table.placeToken(0, 1);
+        int[] slots = new int[3];
+        long[] stamps = new long[slots.length];
+        table.snapshot(0, slots, stamps);
+        assertArrayEquals(new int[]{0, 1, Table.NONE}, slots);
+        assertEquals(3, Table.stampCard(stamps[0]));
+        assertEquals(5, Table.stampCard(stamps[1]));
+        assertEquals(-1, Table.stampCard(stamps[2]));
+
+        // the token goes with its card, so the card placed instead is not read as claimed
+        table.removeCard(1);
+        table.placeCard(7, 1);
+        long version = table.snapshot(0, slots, stamps);
+        assertEquals(version, table.version());
+        assertArrayEquals(new int[]{0, Table.NONE, Table.NONE}, slots);
+        assertEquals(3, Table.stampCard(stamps[0]));
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -143,6 +310,11 @@ class TableTest {
             return null;
         }
 
+        @Override
+        public int forEachSet(int[] cards, Predicate<int[]> action) {
+            return 0;
+        }
+
         @Override
         public void spin() {}
     }
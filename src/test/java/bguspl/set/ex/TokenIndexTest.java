@@ -0,0 +1,67 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenIndexTest {
+
+    TokenIndex tokens;
+
+    @BeforeEach
+    void setUp() {
+        // more than one word per player and per slot
+        tokens = new TokenIndex(70, 130);
+    }
+
+    @Test
+    void add_RemoveAndCount() {
+        assertTrue(tokens.add(3, 129));
+        assertFalse(tokens.add(3, 129));
+        assertTrue(tokens.add(3, 5));
+        assertTrue(tokens.add(69, 5));
+        assertTrue(tokens.contains(3, 129));
+        assertEquals(2, tokens.count(3));
+
+        int[] slots = new int[3];
+        assertEquals(2, tokens.slotsOf(3, slots));
+        assertArrayEquals(new int[]{5, 129}, Arrays.copyOf(slots, 2));
+
+        assertTrue(tokens.remove(3, 129));
+        assertFalse(tokens.remove(3, 129));
+        assertFalse(tokens.contains(3, 129));
+        assertEquals(1, tokens.count(3));
+    }
+
+    @Test
+    void clearPlayer_AndClearSlot() {
+        tokens.add(1, 5);
+        tokens.add(1, 70);
+        tokens.add(2, 70);
+        tokens.add(65, 70);
+
+        List<Integer> removed = new ArrayList<>();
+        tokens.clearSlot(70, removed::add);
+        assertEquals(Arrays.asList(1, 2, 65), removed);
+        assertEquals(1, tokens.count(1));
+        assertEquals(0, tokens.count(65));
+
+        removed.clear();
+        tokens.clearPlayer(1, removed::add);
+        assertEquals(Arrays.asList(5), removed);
+        assertFalse(tokens.contains(1, 5));
+
+        // the slot's view forgot the player too
+        removed.clear();
+        tokens.clearSlot(5, removed::add);
+        assertTrue(removed.isEmpty());
+    }
+}